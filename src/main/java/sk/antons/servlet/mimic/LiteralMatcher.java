@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton for set of literals. It finds all literals
+ * contained in value by one pass through the value.
+ * @author antons
+ */
+class LiteralMatcher {
+
+    private final Node root;
+    private final int size;
+
+    private LiteralMatcher(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Creates matcher for literals. Literal index in list is its id.
+     * @param literals
+     * @return matcher
+     */
+    public static LiteralMatcher instance(List<String> literals) {
+        Node root = new Node();
+        for(int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            Node node = root;
+            for(int j = 0; j < literal.length(); j++) {
+                node = node.childOrCreate(literal.charAt(j));
+            }
+            node.outputs = append(node.outputs, i);
+        }
+        // breadth first computation of failure links
+        Deque<Node> queue = new ArrayDeque<>();
+        for(Node child : root.children) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while(!queue.isEmpty()) {
+            Node node = queue.poll();
+            for(int i = 0; i < node.chars.length; i++) {
+                char c = node.chars[i];
+                Node child = node.children[i];
+                Node fail = node.fail;
+                while((fail != root) && (fail.child(c) == null)) fail = fail.fail;
+                Node target = fail.child(c);
+                child.fail = ((target == null) || (target == child)) ? root : target;
+                child.outputs = merge(child.outputs, child.fail.outputs);
+                queue.add(child);
+            }
+        }
+        return new LiteralMatcher(root, literals.size());
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Ids of all literals contained in value.
+     * @param value
+     * @return set of literal ids
+     */
+    public BitSet matches(String value) {
+        BitSet rv = new BitSet(size);
+        for(int output : root.outputs) rv.set(output);
+        Node node = root;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            Node child = node.child(c);
+            while((child == null) && (node != root)) {
+                node = node.fail;
+                child = node.child(c);
+            }
+            node = (child == null) ? root : child;
+            for(int output : node.outputs) rv.set(output);
+        }
+        return rv;
+    }
+
+    private static class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private int[] outputs = new int[0];
+        private Node fail = null;
+
+        private Node child(char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            return (pos < 0) ? null : children[pos];
+        }
+
+        private Node childOrCreate(char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            if(pos >= 0) return children[pos];
+            pos = -pos - 1;
+            char[] newchars = new char[chars.length + 1];
+            Node[] newchildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newchars, 0, pos);
+            System.arraycopy(children, 0, newchildren, 0, pos);
+            System.arraycopy(chars, pos, newchars, pos + 1, chars.length - pos);
+            System.arraycopy(children, pos, newchildren, pos + 1, children.length - pos);
+            Node node = new Node();
+            newchars[pos] = c;
+            newchildren[pos] = node;
+            chars = newchars;
+            children = newchildren;
+            return node;
+        }
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] rv = Arrays.copyOf(array, array.length + 1);
+        rv[array.length] = value;
+        return rv;
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        if(second.length == 0) return first;
+        int[] rv = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, rv, first.length, second.length);
+        return rv;
+    }
+}
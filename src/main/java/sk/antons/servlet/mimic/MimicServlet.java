@@ -16,6 +16,8 @@
 package sk.antons.servlet.mimic;
 
 import java.io.IOException;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,7 +27,9 @@ import java.util.List;
 import sk.antons.jaul.util.AsRuntimeEx;
 import sk.antons.servlet.mimic.builder.MimicServletBuilder;
 import sk.antons.servlet.mimic.builder.ProcessorBuilder;
+import sk.antons.servlet.util.EvaluationContext;
 import sk.antons.servlet.util.HttpServletRequestWrapper;
+import sk.antons.servlet.util.InputStreamReplicator;
 
 /**
  * Simple servlet for providing some dummy static content.
@@ -35,20 +39,70 @@ import sk.antons.servlet.util.HttpServletRequestWrapper;
 public class MimicServlet extends HttpServlet {
 
     private List<MimicSelector> selectors = new ArrayList<>();
+    private volatile Routing routing = null;
+    private long memoryThreshold = InputStreamReplicator.DEFAULT_THRESHOLD;
 
     public static MimicServlet instance() { return new MimicServlet(); }
-    public MimicServlet selector(MimicSelector selector) { this.selectors.add(selector); return this; }
+    public synchronized MimicServlet selector(MimicSelector selector) { this.selectors.add(selector); this.routing = null; return this; }
+    /**
+     * Current selectors.
+     * @return copy of selector list
+     */
+    public synchronized List<MimicSelector> selectors() { return new ArrayList<>(selectors); }
+    /**
+     * Replaces all selectors. New routing is compiled before it is published,
+     * so requests in progress finish with old selectors and new requests
+     * use only new ones.
+     * @param value new selectors
+     * @return previous selectors (their resources can be released by caller)
+     */
+    public List<MimicSelector> selectors(List<MimicSelector> value) {
+        List<MimicSelector> list = new ArrayList<>(value);
+        Routing compiled = Routing.instance(list);
+        synchronized(this) {
+            List<MimicSelector> previous = this.selectors;
+            this.selectors = list;
+            this.routing = compiled;
+            return previous;
+        }
+    }
+    /**
+     * Builds dispatch index and shared pattern matchers for current selectors.
+     * (It is build lazily by first request if it is not called.)
+     * @return this
+     */
+    public synchronized MimicServlet compile() { this.routing = Routing.instance(selectors); return this; }
+    /**
+     * Max size of request content kept in memory. Bigger request content
+     * is stored in temporary file while request is processed.
+     * @param value threshold in bytes
+     * @return this
+     */
+    public MimicServlet memoryThreshold(long value) { this.memoryThreshold = value; return this; }
 
 
     @Override
     public void service(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        HttpServletRequestWrapper wrapper = null;
         try {
 
-            req = new HttpServletRequestWrapper(req);
+            Routing routing = this.routing;
+            if(routing == null) routing = routing();
+
+            // each request has its own cache of resolved values
+            EvaluationContext context = EvaluationContext.attach(req);
+            int[] candidates = routing.candidates(req);
+            // request is wrapped only if some candidate can read content
+            if(routing.isWrapped(candidates)) {
+                wrapper = new HttpServletRequestWrapper(req, context);
+                wrapper.memoryThreshold(memoryThreshold);
+                req = wrapper;
+            }
 
             boolean something = false;
-            for(MimicSelector selector : selectors) {
-                if(selector.condition().check(req)) {
+            for(int candidate : candidates) {
+                MimicSelector selector = routing.selector(candidate);
+                if(routing.condition(candidate).check(req)) {
                     boolean rv = selector.processor().test(req, res);
                     if(rv) {
                         something = true;
@@ -65,12 +119,41 @@ public class MimicServlet extends HttpServlet {
         } catch(Exception e) {
             throw AsRuntimeEx.state(e);
         } finally {
-            res.getOutputStream().flush();
+            // async response is written and completed by write listener
+            if(req.isAsyncStarted()) {
+                if(wrapper != null) req.getAsyncContext().addListener(new ReleaseListener(wrapper));
+            } else {
+                res.getOutputStream().flush();
+                if(wrapper != null) wrapper.release();
+            }
             //res.getOutputStream().close();
         }
 
     }
 
+    private synchronized Routing routing() {
+        if(routing == null) routing = Routing.instance(selectors);
+        return routing;
+    }
+
+    /**
+     * Releases request content stored by wrapper when async processing ends.
+     */
+    private static class ReleaseListener implements AsyncListener {
+        private final HttpServletRequestWrapper wrapper;
+
+        private ReleaseListener(HttpServletRequestWrapper wrapper) { this.wrapper = wrapper; }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException { wrapper.release(); }
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException { wrapper.release(); }
+        @Override
+        public void onError(AsyncEvent event) throws IOException { wrapper.release(); }
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException { }
+    }
+
     /**
      * Builder for mimic servlet
      * @return builder
@@ -87,7 +170,7 @@ public class MimicServlet extends HttpServlet {
      * Filter configuration info
      * @return configuration info
      */
-    public String configurationInfo() {
+    public synchronized String configurationInfo() {
         StringBuilder sb = new StringBuilder();
         for(MimicSelector selector : selectors) {
             sb.append(selector.configurationInfo());
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.mimic.condition.ConditionBuilder;
+import sk.antons.servlet.mimic.condition.StringCondition;
+import sk.antons.servlet.util.EvaluationContext;
+
+/**
+ * Shares contains() and regexp() conditions over same request attribute
+ * between all selectors.
+ *
+ * All contains literals for one attribute are matched by one automaton,
+ * so value is scanned only once per request regardless of number of literals.
+ * Regular expressions for one attribute are deduplicated and each of them
+ * is evaluated at most once per request.
+ *
+ * Grouping is used only for attributes with more than one pattern.
+ *
+ * @author antons
+ */
+class PatternGroups {
+
+    /**
+     * Replaces contains() and regexp() conditions by grouped conditions.
+     * @param conditions selector conditions
+     * @return conditions with same results
+     */
+    public static List<Condition<HttpServletRequest>> compile(List<Condition<HttpServletRequest>> conditions) {
+        Map<Object, Group> contains = new LinkedHashMap<>();
+        Map<Object, Group> regexps = new LinkedHashMap<>();
+        for(Condition<HttpServletRequest> condition : conditions) {
+            if(condition == null) continue;
+            ConditionBuilder.replace(condition, leaf -> {
+                collect(leaf, contains, regexps);
+                return null;
+            });
+        }
+
+        Map<Object, Group> groups = new HashMap<>();
+        for(Group group : contains.values()) {
+            if(group.params.size() > 1) {
+                group.matcher = LiteralMatcher.instance(group.params);
+                groups.put(key(StringCondition.Operation.CONTAINS, group.resolver), group);
+            }
+        }
+        for(Group group : regexps.values()) {
+            if(group.params.size() > 1) {
+                group.patterns = new Pattern[group.params.size()];
+                for(int i = 0; i < group.patterns.length; i++) {
+                    group.patterns[i] = Pattern.compile(group.params.get(i));
+                }
+                groups.put(key(StringCondition.Operation.REGEXP, group.resolver), group);
+            }
+        }
+
+        List<Condition<HttpServletRequest>> rv = new ArrayList<>();
+        for(Condition<HttpServletRequest> condition : conditions) {
+            if((condition == null) || groups.isEmpty()) {
+                rv.add(condition);
+                continue;
+            }
+            rv.add(ConditionBuilder.replace(condition, leaf -> {
+                if(!(leaf instanceof StringCondition)) return null;
+                StringCondition<HttpServletRequest> cnd = (StringCondition<HttpServletRequest>)leaf;
+                Group group = groups.get(key(cnd.operation(), cnd.resolver()));
+                if(group == null) return null;
+                return new GroupedCondition(cnd, group, group.params.indexOf(cnd.param()));
+            }));
+        }
+        return rv;
+    }
+
+    private static void collect(Condition<HttpServletRequest> leaf, Map<Object, Group> contains, Map<Object, Group> regexps) {
+        if(!(leaf instanceof StringCondition)) return;
+        StringCondition<HttpServletRequest> cnd = (StringCondition<HttpServletRequest>)leaf;
+        if(cnd.param() == null) return;
+        Map<Object, Group> map = null;
+        if(cnd.operation() == StringCondition.Operation.CONTAINS) map = contains;
+        else if(cnd.operation() == StringCondition.Operation.REGEXP) map = regexps;
+        if(map == null) return;
+        Group group = map.get(cnd.resolver());
+        if(group == null) {
+            group = new Group(cnd.resolver());
+            map.put(cnd.resolver(), group);
+        }
+        if(!group.params.contains(cnd.param())) group.params.add(cnd.param());
+    }
+
+    private static List<Object> key(StringCondition.Operation operation, Object resolver) {
+        List<Object> key = new ArrayList<>(2);
+        key.add(operation);
+        key.add(resolver);
+        return key;
+    }
+
+    /**
+     * Patterns for one attribute. Group instance is also key for
+     * per request results.
+     */
+    private static class Group {
+        private final Function<HttpServletRequest, String> resolver;
+        private final List<String> params = new ArrayList<>();
+        private LiteralMatcher matcher;
+        private Pattern[] patterns;
+
+        private Group(Function<HttpServletRequest, String> resolver) {
+            this.resolver = resolver;
+        }
+
+        private boolean check(HttpServletRequest request, int index) {
+            String value = resolver.apply(request);
+            if(value == null) return false;
+            EvaluationContext context = EvaluationContext.of(request);
+            if(matcher != null) {
+                BitSet matches = (context == null) ? matcher.matches(value) : context.value(this, matcher::matches, value);
+                return matches.get(index);
+            } else {
+                if(context == null) return patterns[index].matcher(value).matches();
+                byte[] results = context.value(this, v -> new byte[patterns.length], value);
+                if(results[index] == 0) results[index] = patterns[index].matcher(value).matches() ? (byte)1 : (byte)2;
+                return results[index] == 1;
+            }
+        }
+    }
+
+    /**
+     * Replacement of contains() or regexp() condition.
+     */
+    static class GroupedCondition implements Condition<HttpServletRequest> {
+        private final StringCondition<HttpServletRequest> original;
+        private final Group group;
+        private final int index;
+
+        private GroupedCondition(StringCondition<HttpServletRequest> original, Group group, int index) {
+            this.original = original;
+            this.group = group;
+            this.index = index;
+        }
+
+        public StringCondition<HttpServletRequest> original() { return original; }
+
+        @Override
+        public boolean check(HttpServletRequest request) {
+            return group.check(request, index);
+        }
+
+        @Override
+        public String toString() {
+            return original.toString();
+        }
+    }
+
+}
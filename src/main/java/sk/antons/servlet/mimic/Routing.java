@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+import sk.antons.servlet.mimic.builder.RequestResolver;
+import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.mimic.condition.ConditionBuilder;
+import sk.antons.servlet.mimic.condition.ConstCondition;
+import sk.antons.servlet.mimic.condition.StringCondition;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+import sk.antons.servlet.mimic.processor.DirectoryProcessor;
+
+/**
+ * Compiled selectors. It contains selector index and selector conditions
+ * prepared for evaluation. Instance is immutable.
+ * @author antons
+ */
+class Routing {
+
+    private final MimicSelector[] selectors;
+    private final Condition<HttpServletRequest>[] conditions;
+    private final SelectorIndex index;
+    private final boolean[] wrapped;
+
+    private Routing(MimicSelector[] selectors, Condition<HttpServletRequest>[] conditions, SelectorIndex index, boolean[] wrapped) {
+        this.selectors = selectors;
+        this.conditions = conditions;
+        this.index = index;
+        this.wrapped = wrapped;
+    }
+
+    public static Routing instance(List<MimicSelector> selectors) {
+        List<Condition<HttpServletRequest>> conditions = new ArrayList<>();
+        boolean[] wrapped = new boolean[selectors.size()];
+        for(int i = 0; i < wrapped.length; i++) {
+            MimicSelector selector = selectors.get(i);
+            conditions.add(selector.condition());
+            wrapped[i] = usesBody(selector);
+        }
+        conditions = PatternGroups.compile(conditions);
+        return new Routing(
+            selectors.toArray(new MimicSelector[selectors.size()])
+            , conditions.toArray(new Condition[conditions.size()])
+            , SelectorIndex.instance(selectors)
+            , wrapped);
+    }
+
+    /**
+     * Selector may read request content if some condition uses resolver
+     * other than simple attribute, header or parameter or if processor
+     * is not known to ignore request content.
+     */
+    private static boolean usesBody(MimicSelector selector) {
+        boolean[] body = new boolean[] {false};
+        if(selector.condition() != null) {
+            ConditionBuilder.replace(selector.condition(), leaf -> {
+                if(leaf instanceof ConstCondition) return null;
+                if(leaf instanceof StringCondition) {
+                    Object resolver = ((StringCondition)leaf).resolver();
+                    if((resolver instanceof RequestResolver) && (((RequestResolver)resolver).cost() < RequestResolver.CONTENT)) return null;
+                }
+                body[0] = true;
+                return null;
+            });
+        }
+        BiPredicate<HttpServletRequest, HttpServletResponse> processor = selector.processor();
+        if(processor instanceof DirectoryProcessor) return body[0];
+        if(!(processor instanceof ContentProcessor) || ((ContentProcessor)processor).usesRequestBody()) body[0] = true;
+        return body[0];
+    }
+
+    /**
+     * Indexes of selectors which can match request.
+     */
+    public int[] candidates(HttpServletRequest request) { return index.candidates(request); }
+    public MimicSelector selector(int index) { return selectors[index]; }
+    /**
+     * Checks if some of candidate selectors may read request content,
+     * so request must be wrapped to make content readable more times.
+     */
+    public boolean isWrapped(int[] candidates) {
+        for(int candidate : candidates) {
+            if(wrapped[candidate]) return true;
+        }
+        return false;
+    }
+    public Condition<HttpServletRequest> condition(int index) { return conditions[index]; }
+
+}
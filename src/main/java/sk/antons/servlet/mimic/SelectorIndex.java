@@ -0,0 +1,321 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import sk.antons.servlet.mimic.builder.RequestConditionBuilder;
+import sk.antons.servlet.mimic.condition.AndCondition;
+import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.mimic.condition.ConstCondition;
+import sk.antons.servlet.mimic.condition.NamedCondition;
+import sk.antons.servlet.mimic.condition.OrCondition;
+import sk.antons.servlet.mimic.condition.StringCondition;
+
+/**
+ * Dispatch index for selectors. It is build from path and method conditions
+ * which must be true for selector condition to be true. For each request it
+ * returns only candidate selectors (in original order) which must be fully
+ * evaluated. Selectors without such conditions are always candidates.
+ *
+ * Paths are stored in prefix tree so lookup cost depends on path length and
+ * not on number of selectors.
+ *
+ * @author antons
+ */
+public class SelectorIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Bucket anyMethod;
+    private final Map<String, Bucket> methods;
+
+    private SelectorIndex(Bucket anyMethod, Map<String, Bucket> methods) {
+        this.anyMethod = anyMethod;
+        this.methods = methods;
+    }
+
+    public static SelectorIndex instance(List<MimicSelector> selectors) {
+        Bucket anyMethod = new Bucket();
+        Map<String, Bucket> methods = new HashMap<>();
+        for(int i = 0; i < selectors.size(); i++) {
+            Condition<HttpServletRequest> condition = selectors.get(i).condition();
+            Constraint constraint = (condition == null) ? Constraint.ANY : constraint(condition);
+            if(constraint.methods == null) {
+                anyMethod.add(i, constraint.paths);
+            } else {
+                for(String method : constraint.methods) {
+                    Bucket bucket = methods.get(method);
+                    if(bucket == null) {
+                        bucket = new Bucket();
+                        methods.put(method, bucket);
+                    }
+                    bucket.add(i, constraint.paths);
+                }
+            }
+        }
+        return new SelectorIndex(anyMethod, methods);
+    }
+
+    /**
+     * Indexes of selectors which can match given request.
+     * @param request
+     * @return sorted selector indexes
+     */
+    public int[] candidates(HttpServletRequest request) {
+        return candidates(request.getMethod(), request.getRequestURI());
+    }
+
+    /**
+     * Indexes of selectors which can match given method and path.
+     * @param method
+     * @param path
+     * @return sorted selector indexes
+     */
+    public int[] candidates(String method, String path) {
+        IntList list = new IntList();
+        anyMethod.collect(path, list);
+        Bucket bucket = (method == null) ? null : methods.get(method);
+        if(bucket != null) bucket.collect(path, list);
+        return list.sorted();
+    }
+
+
+    private static Constraint constraint(Condition<HttpServletRequest> condition) {
+        if(condition instanceof NamedCondition) {
+            return constraint(((NamedCondition<HttpServletRequest>)condition).condition());
+        } else if(condition instanceof ConstCondition) {
+            return ((ConstCondition)condition).result() ? Constraint.ANY : Constraint.NONE;
+        } else if(condition instanceof AndCondition) {
+            Constraint constraint = Constraint.ANY;
+            for(Condition<HttpServletRequest> cnd : ((AndCondition<HttpServletRequest>)condition).conditions()) {
+                constraint = Constraint.and(constraint, constraint(cnd));
+            }
+            return constraint;
+        } else if(condition instanceof OrCondition) {
+            Constraint constraint = Constraint.NONE;
+            for(Condition<HttpServletRequest> cnd : ((OrCondition<HttpServletRequest>)condition).conditions()) {
+                constraint = Constraint.or(constraint, constraint(cnd));
+            }
+            return constraint;
+        } else if(condition instanceof StringCondition) {
+            StringCondition<HttpServletRequest> cnd = (StringCondition<HttpServletRequest>)condition;
+            if(cnd.param() == null) return Constraint.ANY;
+            if(cnd.resolver() == RequestConditionBuilder.PATH) {
+                if(cnd.operation() == StringCondition.Operation.EQUALS) return Constraint.path(PathKey.exact(cnd.param()));
+                if(cnd.operation() == StringCondition.Operation.STARTS_WITH) return Constraint.path(PathKey.prefix(cnd.param()));
+            } else if(cnd.resolver() == RequestConditionBuilder.METHOD) {
+                if(cnd.operation() == StringCondition.Operation.EQUALS) return Constraint.method(cnd.param());
+            }
+            return Constraint.ANY;
+        } else {
+            return Constraint.ANY;
+        }
+    }
+
+    /**
+     * Conditions which must be true for selector. Null means no constraint.
+     */
+    private static class Constraint {
+        private static final Constraint ANY = new Constraint(null, null);
+        private static final Constraint NONE = new Constraint(new ArrayList<>(), new LinkedHashSet<>());
+
+        List<PathKey> paths;
+        Set<String> methods;
+
+        private Constraint(List<PathKey> paths, Set<String> methods) {
+            this.paths = paths;
+            this.methods = methods;
+        }
+
+        private static Constraint path(PathKey key) {
+            List<PathKey> paths = new ArrayList<>();
+            paths.add(key);
+            return new Constraint(paths, null);
+        }
+
+        private static Constraint method(String method) {
+            Set<String> methods = new LinkedHashSet<>();
+            methods.add(method);
+            return new Constraint(null, methods);
+        }
+
+        // both must be true so it is enough to use more selective one
+        private static Constraint and(Constraint left, Constraint right) {
+            List<PathKey> paths = left.paths;
+            if(paths == null) paths = right.paths;
+            else if((right.paths != null) && narrower(right.paths, paths)) paths = right.paths;
+            Set<String> methods = left.methods;
+            if(methods == null) {
+                methods = right.methods;
+            } else if(right.methods != null) {
+                methods = new LinkedHashSet<>(left.methods);
+                methods.retainAll(right.methods);
+            }
+            return new Constraint(paths, methods);
+        }
+
+        private static boolean narrower(List<PathKey> first, List<PathKey> second) {
+            if(first.size() != second.size()) return first.size() < second.size();
+            int firstweight = 0;
+            for(PathKey key : first) firstweight = firstweight + key.weight();
+            int secondweight = 0;
+            for(PathKey key : second) secondweight = secondweight + key.weight();
+            return firstweight > secondweight;
+        }
+
+        // one of them must be true so both alternatives must be indexed
+        private static Constraint or(Constraint left, Constraint right) {
+            List<PathKey> paths = null;
+            if((left.paths != null) && (right.paths != null)) {
+                paths = new ArrayList<>(left.paths);
+                paths.addAll(right.paths);
+            }
+            Set<String> methods = null;
+            if((left.methods != null) && (right.methods != null)) {
+                methods = new LinkedHashSet<>(left.methods);
+                methods.addAll(right.methods);
+            }
+            return new Constraint(paths, methods);
+        }
+    }
+
+    private static class PathKey {
+        String literal;
+        boolean exact;
+
+        // exact match is always narrower than prefix
+        private int weight() { return exact ? Integer.MAX_VALUE / 1024 : literal.length(); }
+
+        private static PathKey exact(String literal) {
+            PathKey key = new PathKey();
+            key.literal = literal;
+            key.exact = true;
+            return key;
+        }
+
+        private static PathKey prefix(String literal) {
+            PathKey key = new PathKey();
+            key.literal = literal;
+            key.exact = false;
+            return key;
+        }
+    }
+
+    /**
+     * Selectors for one method.
+     */
+    private static class Bucket {
+        private int[] any = EMPTY;
+        private final Node root = new Node();
+
+        private void add(int selector, List<PathKey> paths) {
+            if(paths == null) {
+                any = append(any, selector);
+                return;
+            }
+            for(PathKey path : paths) {
+                Node node = root;
+                for(int i = 0; i < path.literal.length(); i++) {
+                    node = node.childOrCreate(path.literal.charAt(i));
+                }
+                if(path.exact) node.exact = append(node.exact, selector);
+                else node.prefix = append(node.prefix, selector);
+            }
+        }
+
+        private void collect(String path, IntList list) {
+            list.add(any);
+            if(path == null) return;
+            Node node = root;
+            list.add(node.prefix);
+            for(int i = 0; i < path.length(); i++) {
+                node = node.child(path.charAt(i));
+                if(node == null) return;
+                list.add(node.prefix);
+            }
+            list.add(node.exact);
+        }
+    }
+
+    /**
+     * Prefix tree node. Children are stored in sorted array.
+     */
+    private static class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private int[] prefix = EMPTY;
+        private int[] exact = EMPTY;
+
+        private Node child(char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            return (pos < 0) ? null : children[pos];
+        }
+
+        private Node childOrCreate(char c) {
+            int pos = Arrays.binarySearch(chars, c);
+            if(pos >= 0) return children[pos];
+            pos = -pos - 1;
+            char[] newchars = new char[chars.length + 1];
+            Node[] newchildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newchars, 0, pos);
+            System.arraycopy(children, 0, newchildren, 0, pos);
+            System.arraycopy(chars, pos, newchars, pos + 1, chars.length - pos);
+            System.arraycopy(children, pos, newchildren, pos + 1, children.length - pos);
+            Node node = new Node();
+            newchars[pos] = c;
+            newchildren[pos] = node;
+            chars = newchars;
+            children = newchildren;
+            return node;
+        }
+    }
+
+    private static int[] append(int[] array, int value) {
+        if((array.length > 0) && (array[array.length - 1] == value)) return array;
+        int[] rv = Arrays.copyOf(array, array.length + 1);
+        rv[array.length] = value;
+        return rv;
+    }
+
+    private static class IntList {
+        private int[] data = new int[16];
+        private int size = 0;
+
+        private void add(int[] values) {
+            if(values.length == 0) return;
+            if(size + values.length > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, size + values.length));
+            System.arraycopy(values, 0, data, size, values.length);
+            size = size + values.length;
+        }
+
+        private int[] sorted() {
+            if(size == 0) return EMPTY;
+            Arrays.sort(data, 0, size);
+            int len = 1;
+            for(int i = 1; i < size; i++) {
+                if(data[i] != data[len - 1]) data[len++] = data[i];
+            }
+            return Arrays.copyOf(data, len);
+        }
+    }
+}
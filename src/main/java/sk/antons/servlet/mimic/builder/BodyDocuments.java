@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import sk.antons.jaul.util.TextFile;
+import sk.antons.jaul.xml.Elem;
+import sk.antons.json.JsonValue;
+import sk.antons.json.parse.JsonParser;
+import sk.antons.servlet.util.EvaluationContext;
+
+/**
+ * Request content and documents parsed from it. Text and parsed documents
+ * are stored in request evaluation context, so body is decoded and parsed
+ * only once per request regardless of number of conditions using it.
+ * @author antons
+ */
+class BodyDocuments {
+
+    private final String encoding;
+    private final RequestResolver text;
+    private final List<String> jsonKey;
+    private final List<String> xmlKey;
+
+    private BodyDocuments(String encoding) {
+        this.encoding = encoding;
+        this.text = RequestResolver.cached("content", RequestResolver.CONTENT, this::read, encoding);
+        this.jsonKey = Arrays.asList("jsonDocument", encoding);
+        this.xmlKey = Arrays.asList("xmlDocument", encoding);
+    }
+
+    public static BodyDocuments instance(String encoding) { return new BodyDocuments(encoding); }
+
+    /**
+     * Request content as text.
+     */
+    public RequestResolver text() { return text; }
+
+    /**
+     * Request content parsed as json.
+     */
+    public JsonValue json(HttpServletRequest request) throws Exception {
+        return (JsonValue)document(request, jsonKey, text -> JsonParser.parse(text));
+    }
+
+    /**
+     * Request content parsed as xml.
+     */
+    public Elem xml(HttpServletRequest request) throws Exception {
+        return (Elem)document(request, xmlKey, text -> Elem.parse(text));
+    }
+
+    /**
+     * Request content as character stream. (content is not cached)
+     */
+    public Reader reader(HttpServletRequest request) throws IOException {
+        return new BufferedReader(new InputStreamReader(request.getInputStream(), (encoding == null) ? "utf-8" : encoding));
+    }
+
+    private String read(HttpServletRequest request) {
+        try {
+            return TextFile.read(request.getInputStream(), encoding);
+        } catch(Exception e) {
+            return e.getMessage();
+        }
+    }
+
+    // parsing failure is stored too, so broken content is not parsed again
+    private Object document(HttpServletRequest request, Object key, Parser parser) throws Exception {
+        Function<HttpServletRequest, Object> safeParser = r -> {
+            try {
+                return parser.parse(text.apply(r));
+            } catch(Exception e) {
+                return e;
+            }
+        };
+        EvaluationContext context = EvaluationContext.of(request);
+        Object document = (context == null) ? safeParser.apply(request) : context.value(key, safeParser, request);
+        if(document instanceof Exception) throw (Exception)document;
+        return document;
+    }
+
+    private static interface Parser {
+        Object parse(String text) throws Exception;
+    }
+
+}
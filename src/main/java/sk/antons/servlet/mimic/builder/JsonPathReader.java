@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.Reader;
+import sk.antons.json.parse.JsonScanner;
+import sk.antons.json.parse.JsonScanner.Token;
+
+/**
+ * Streaming json path extractor. It reads json tokens directly from reader,
+ * skips subtrees which are not on given path and stops reading by first
+ * value found. No json tree is created.
+ *
+ * Path is interpreted same way as JsonValue.find(path).firstLiteral().
+ * Path items are attribute names or array indexes and '*' matches any of them.
+ * If first value found is not literal null is returned.
+ *
+ * @author antons
+ */
+class JsonPathReader {
+
+    private static final String NOT_FOUND = new String("not found");
+
+    private final String[] path;
+
+    private JsonPathReader(String[] path) {
+        this.path = (path == null) ? new String[0] : path.clone();
+    }
+
+    public static JsonPathReader instance(String... path) { return new JsonPathReader(path); }
+
+    /**
+     * Finds first value on path.
+     * @param reader json source
+     * @return literal value or null if value is not found or it is not literal
+     */
+    public String firstLiteral(Reader reader) {
+        JsonScanner scanner = JsonScanner.instance(reader);
+        Token token = scanner.next();
+        if(token == null) return null;
+        String value = value(scanner, token, 0);
+        return (value == NOT_FOUND) ? null : value;
+    }
+
+    // token is first token of value. value is fully consumed if it is not found
+    private String value(JsonScanner scanner, Token token, int depth) {
+        if(depth == path.length) {
+            return isLiteral(token) ? scanner.stringValue() : null;
+        }
+        if(token == Token.OBJECT_START) {
+            while(true) {
+                token = scanner.next();
+                if((token == null) || (token == Token.OBJECT_END)) return NOT_FOUND;
+                boolean match = matches(depth, scanner.stringValue());
+                token = scanner.next();
+                if(match) {
+                    String value = value(scanner, token, depth + 1);
+                    if(value != NOT_FOUND) return value;
+                } else {
+                    skip(scanner, token);
+                }
+            }
+        } else if(token == Token.ARRAY_START) {
+            int index = 0;
+            while(true) {
+                token = scanner.next();
+                if((token == null) || (token == Token.ARRAY_END)) return NOT_FOUND;
+                if(matches(depth, Integer.toString(index))) {
+                    String value = value(scanner, token, depth + 1);
+                    if(value != NOT_FOUND) return value;
+                } else {
+                    skip(scanner, token);
+                }
+                index++;
+            }
+        } else {
+            return NOT_FOUND;
+        }
+    }
+
+    private boolean matches(int depth, String name) {
+        String item = path[depth];
+        return "*".equals(item) || item.equals(name);
+    }
+
+    private static void skip(JsonScanner scanner, Token token) {
+        if((token != Token.OBJECT_START) && (token != Token.ARRAY_START)) return;
+        int level = 1;
+        while(level > 0) {
+            token = scanner.next();
+            if(token == null) return;
+            if((token == Token.OBJECT_START) || (token == Token.ARRAY_START)) level++;
+            else if((token == Token.OBJECT_END) || (token == Token.ARRAY_END)) level--;
+        }
+    }
+
+    private static boolean isLiteral(Token token) {
+        return (token == Token.LITERAL_TEXT)
+            || (token == Token.LITERAL_BOOL)
+            || (token == Token.LITERAL_INT)
+            || (token == Token.LITERAL_BD)
+            || (token == Token.LITERAL_NULL);
+    }
+
+}
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import sk.antons.json.JsonArray;
+import sk.antons.json.JsonAttribute;
+import sk.antons.json.JsonObject;
+import sk.antons.json.JsonValue;
+import sk.antons.json.parse.JsonParser;
+import sk.antons.servlet.mimic.MimicSelector;
+import sk.antons.servlet.mimic.MimicServlet;
+
+/**
+ * Declarative mimic configuration in json. Configuration is json file
+ * (or directory with json files processed in name order) like
+ *
+ * {@code <pre>}
+ * {
+ *   "encoding": "utf-8",
+ *   "cases": [
+ *     {
+ *       "when": { "path": { "startsWith": "/rest/text" }, "method": "GET" },
+ *       "process": { "contentType": "text/plain", "content": "A text to be returned" }
+ *     },
+ *     {
+ *       "when": {
+ *         "or": [ { "path": "/soap/ok" }, { "header": { "SOAPAction": { "contains": "ok" } } } ],
+ *         "xmlContent": { "Envelope/Body/order/id": { "exists": true } }
+ *       },
+ *       "process": { "status": 200, "contentType": "application/soap+xml", "file": "samples/ok.xml" }
+ *     }
+ *   ]
+ * }
+ * {@code </pre>}
+ *
+ * Keys of "when" object are joined by and. Value of attribute is string
+ * (equals) or object with operations equals, equalsIgnoreCase, startsWith,
+ * endsWith, contains, match, regexp and exists. Attributes header and param
+ * contain object with names, attributes jsonContent, xmlContent,
+ * streamedJsonContent and streamedXmlContent object with paths separated by '/'.
+ * Keys "or" (array), "not" (object) and "any" (true) combine conditions.
+ *
+ * Keys of "process" object are ProcessorBuilder methods: name, status,
+ * contentType, encoding, headers (object), content, template, file, url
+ * (byteContentFromUrl), textUrl, templateUrl, length, compress (array),
+ * conditional, ranges, async, delay (number or [p50, p99]), bandwidth and
+ * loading (eager or lazy).
+ * Relative file paths are resolved against configuration directory.
+ *
+ * Configuration can be watched and servlet routing is replaced by new one
+ * after each change. New routing is completely prepared in watching thread
+ * and published at once, so requests are never processed by partially loaded
+ * configuration. Invalid configuration is reported to error handler and
+ * previous routing is kept. Files opened by replaced routing are closed when
+ * requests in progress finish with them.
+ *
+ * @author antons
+ */
+public class MimicConfig implements Closeable {
+
+    private static final Logger log = Logger.getLogger(MimicConfig.class.getName());
+
+    private final File source;
+    private String encoding = "utf-8";
+    private long delay = 200;
+    private Consumer<Exception> errorHandler = e -> log.log(Level.WARNING, "mimic configuration not reloaded, previous routing is kept", e);
+    private volatile WatchService watcher = null;
+
+    private MimicConfig(File source) {
+        this.source = source;
+    }
+
+    /**
+     * Configuration from json file or from directory with json files.
+     * @param source file or directory
+     * @return configuration
+     */
+    public static MimicConfig instance(File source) { return new MimicConfig(source); }
+    /**
+     * Default encoding (used if configuration does not define one).
+     * @param value encoding
+     * @return this
+     */
+    public MimicConfig encoding(String value) { this.encoding = value; return this; }
+    /**
+     * Time to wait for further changes before configuration is reloaded,
+     * so editor saves and file copies produce only one reload.
+     * @param millis delay (default 200ms)
+     * @return this
+     */
+    public MimicConfig delay(long millis) { this.delay = millis; return this; }
+    /**
+     * Handler of reload errors. (errors are logged by java.util.logging by default)
+     * @param value handler
+     * @return this
+     */
+    public MimicConfig errorHandler(Consumer<Exception> value) { this.errorHandler = value; return this; }
+
+    /**
+     * Reads configuration and creates selectors.
+     * @return selectors in configuration order
+     */
+    public List<MimicSelector> selectors() {
+        List<MimicSelector> selectors = new ArrayList<>();
+        for(File file : files()) {
+            try {
+                JsonValue json = JsonParser.parse(new String(Files.readAllBytes(file.toPath()), "utf-8"));
+                if((json == null) || !json.isObject()) throw new IllegalArgumentException("configuration is not json object");
+                selectors.addAll(selectors(json.asObject(), file.getAbsoluteFile().getParentFile()));
+            } catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException(file.getAbsolutePath() + ": " + e.getMessage(), e);
+            } catch(Exception e) {
+                throw new IllegalStateException(file.getAbsolutePath() + ": " + e.getMessage(), e);
+            }
+        }
+        return selectors;
+    }
+
+    /**
+     * Replaces servlet selectors by configuration ones and replaces them
+     * again after each configuration change. Watching thread is daemon
+     * and it is stopped by close().
+     * @param servlet servlet to be configured
+     * @return this
+     */
+    public synchronized MimicConfig watch(MimicServlet servlet) {
+        if(watcher != null) throw new IllegalStateException("configuration is already watched");
+        servlet.selectors(selectors());
+        try {
+            Path dir = (source.isDirectory() ? source : source.getAbsoluteFile().getParentFile()).toPath();
+            watcher = FileSystems.getDefault().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        final WatchService ws = watcher;
+        Thread thread = new Thread(() -> watch(ws, servlet), "mimic-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stops watching of configuration.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(watcher != null) watcher.close();
+        watcher = null;
+    }
+
+    private void watch(WatchService ws, MimicServlet servlet) {
+        try {
+            while(true) {
+                WatchKey key = ws.take();
+                boolean changed = relevant(key);
+                // wait till changes are finished
+                while((key = ws.poll(delay, TimeUnit.MILLISECONDS)) != null) {
+                    changed = relevant(key) || changed;
+                }
+                if(!changed) continue;
+                List<MimicSelector> previous;
+                try {
+                    previous = servlet.selectors(selectors());
+                } catch(Exception e) {
+                    errorHandler.accept(e);
+                    continue;
+                }
+                close(previous);
+            }
+        } catch(ClosedWatchServiceException | InterruptedException e) {
+            // watching stopped
+        }
+    }
+
+    // files of replaced processors are closed after their running requests finish
+    private static void close(List<MimicSelector> selectors) {
+        for(MimicSelector selector : selectors) {
+            if(!(selector.processor() instanceof Closeable)) continue;
+            try {
+                ((Closeable)selector.processor()).close();
+            } catch(Exception e) {
+                log.log(Level.WARNING, "replaced mimic processor not closed", e);
+            }
+        }
+    }
+
+    private boolean relevant(WatchKey key) {
+        boolean rv = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW) rv = true;
+            else if(source.isDirectory()) rv = rv || event.context().toString().endsWith(".json");
+            else rv = rv || event.context().toString().equals(source.getName());
+        }
+        key.reset();
+        return rv;
+    }
+
+    private List<File> files() {
+        if(!source.isDirectory()) return Arrays.asList(source);
+        File[] files = source.listFiles((dir, name) -> name.endsWith(".json"));
+        if(files == null) return new ArrayList<>();
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private List<MimicSelector> selectors(JsonObject config, File dir) {
+        String enc = string(config, "encoding", encoding);
+        List<MimicSelector> selectors = new ArrayList<>();
+        JsonValue cases = config.first("cases");
+        if((cases == null) || !cases.isArray()) throw new IllegalArgumentException("no cases array");
+        JsonArray array = cases.asArray();
+        for(int i = 0; i < array.size(); i++) {
+            JsonValue item = array.get(i);
+            if(!item.isObject()) throw new IllegalArgumentException("case " + i + " is not object");
+            JsonValue when = item.asObject().first("when");
+            JsonValue process = item.asObject().first("process");
+            if((when == null) || !when.isObject()) throw new IllegalArgumentException("case " + i + " has no when object");
+            if((process == null) || !process.isObject()) throw new IllegalArgumentException("case " + i + " has no process object");
+            SelectorBuilder<Object> selector = SelectorBuilder.instance(enc, null, s -> selectors.add((MimicSelector)s));
+            RequestConditionBuilder<SelectorBuilder<Object>> condition = selector.when();
+            when(condition, when.asObject());
+            condition.done().process(processor(process.asObject(), enc, dir).build());
+        }
+        return selectors;
+    }
+
+    private static void when(RequestConditionBuilder<?> builder, JsonObject when) {
+        if(when.isEmpty()) throw new IllegalArgumentException("empty condition " + when.toCompactString());
+        builder.lb();
+        boolean first = true;
+        for(JsonAttribute attr : when.toList()) {
+            if(!first) builder.and();
+            first = false;
+            String name = attr.name().stringValue();
+            JsonValue value = attr.value();
+            switch(name) {
+                case "any":
+                    builder.any();
+                    break;
+                case "not":
+                    builder.not();
+                    when(builder, object(value, name));
+                    break;
+                case "or":
+                    if(!value.isArray() || value.asArray().isEmpty()) throw new IllegalArgumentException("or is not nonempty array");
+                    builder.lb();
+                    for(int i = 0; i < value.asArray().size(); i++) {
+                        if(i > 0) builder.or();
+                        when(builder, object(value.asArray().get(i), name));
+                    }
+                    builder.rb();
+                    break;
+                case "header":
+                case "param":
+                case "jsonContent":
+                case "xmlContent":
+                case "streamedJsonContent":
+                case "streamedXmlContent":
+                    boolean nested = false;
+                    for(JsonAttribute item : object(value, name).toList()) {
+                        if(nested) builder.and();
+                        nested = true;
+                        operation(keyed(builder, name, item.name().stringValue()), item.value(), name);
+                    }
+                    if(!nested) throw new IllegalArgumentException("no " + name + " condition");
+                    break;
+                default:
+                    operation(attribute(builder, name), value, name);
+            }
+        }
+        builder.rb();
+    }
+
+    private static StringConditionBuilder<?, ?> attribute(RequestConditionBuilder<?> builder, String name) {
+        switch(name) {
+            case "path": return builder.path();
+            case "uri": return builder.uri();
+            case "method": return builder.method();
+            case "contentType": return builder.contentType();
+            case "contextPath": return builder.contextPath();
+            case "servletPath": return builder.servletPath();
+            case "pathInfo": return builder.pathInfo();
+            case "queryString": return builder.queryString();
+            case "schema": return builder.schema();
+            case "localAddr": return builder.localAddr();
+            case "localName": return builder.localName();
+            case "remoteAddr": return builder.remoteAddr();
+            case "remoteHost": return builder.remoteHost();
+            case "remoteUser": return builder.remoteUser();
+            case "content": return builder.content();
+            default: throw new IllegalArgumentException("unknown condition attribute " + name);
+        }
+    }
+
+    private static StringConditionBuilder<?, ?> keyed(RequestConditionBuilder<?> builder, String name, String key) {
+        switch(name) {
+            case "header": return builder.header(key);
+            case "param": return builder.param(key);
+            case "jsonContent": return builder.jsonContent(path(key));
+            case "xmlContent": return builder.xmlContent(path(key));
+            case "streamedJsonContent": return builder.streamedJsonContent(path(key));
+            default: return builder.streamedXmlContent(path(key));
+        }
+    }
+
+    private static void operation(StringConditionBuilder<?, ?> builder, JsonValue value, String name) {
+        if(value.isLiteral()) {
+            builder.equals(value.asLiteral().stringValue());
+            return;
+        }
+        JsonObject object = object(value, name);
+        if(object.size() != 1) throw new IllegalArgumentException("condition " + name + " must have exactly one operation");
+        JsonAttribute attr = object.attr(0);
+        String op = attr.name().stringValue();
+        String param = attr.value().isLiteral() ? attr.value().asLiteral().stringValue() : null;
+        if((param == null) && !"exists".equals(op)) throw new IllegalArgumentException("no " + op + " parameter for " + name);
+        switch(op) {
+            case "equals": builder.equals(param); break;
+            case "equalsIgnoreCase": builder.equalsIgnoreCase(param); break;
+            case "startsWith": builder.startsWith(param); break;
+            case "endsWith": builder.endsWitn(param); break;
+            case "contains": builder.contains(param); break;
+            case "match": builder.match(param); break;
+            case "regexp": builder.regexp(param); break;
+            case "exists": builder.exists(); break;
+            default: throw new IllegalArgumentException("unknown operation " + op + " for " + name);
+        }
+    }
+
+    private static ProcessorBuilder processor(JsonObject process, String encoding, File dir) {
+        ProcessorBuilder builder = ProcessorBuilder.instance().encoding(encoding);
+        for(JsonAttribute attr : process.toList()) {
+            String name = attr.name().stringValue();
+            JsonValue value = attr.value();
+            switch(name) {
+                case "name": builder.name(literal(value, name)); break;
+                case "status": builder.status((int)number(value, name)); break;
+                case "contentType": builder.contentType(literal(value, name)); break;
+                case "encoding": builder.encoding(literal(value, name)); break;
+                case "headers":
+                    for(JsonAttribute header : object(value, name).toList()) {
+                        builder.header(header.name().stringValue(), literal(header.value(), name));
+                    }
+                    break;
+                case "content": builder.content(literal(value, name)); break;
+                case "template": builder.template(literal(value, name)); break;
+                case "file": builder.content(file(dir, literal(value, name))); break;
+                case "url": builder.byteContentFromUrl(literal(value, name)); break;
+                case "textUrl": builder.textContentFromUrl(literal(value, name)); break;
+                case "templateUrl": builder.templateFromUrl(literal(value, name)); break;
+                case "length": builder.length(number(value, name)); break;
+                case "compress":
+                    if(!value.isArray()) throw new IllegalArgumentException("compress is not array");
+                    String[] encodings = new String[value.asArray().size()];
+                    for(int i = 0; i < encodings.length; i++) {
+                        encodings[i] = literal(value.asArray().get(i), name);
+                    }
+                    builder.compress(encodings);
+                    break;
+                case "conditional": builder.conditional(Boolean.parseBoolean(literal(value, name))); break;
+                case "ranges": builder.ranges(Boolean.parseBoolean(literal(value, name))); break;
+                case "async": builder.async(Boolean.parseBoolean(literal(value, name))); break;
+                case "delay":
+                    if(value.isArray() && (value.asArray().size() == 2)) builder.delay(number(value.asArray().get(0), name), number(value.asArray().get(1), name));
+                    else builder.delay(number(value, name));
+                    break;
+                case "bandwidth": builder.bandwidth(number(value, name)); break;
+                case "loading": builder.loading(ResourceLoading.valueOf(literal(value, name).toUpperCase())); break;
+                default: throw new IllegalArgumentException("unknown processor attribute " + name);
+            }
+        }
+        return builder;
+    }
+
+    private static File file(File dir, String name) {
+        File file = new File(name);
+        return file.isAbsolute() ? file : new File(dir, name);
+    }
+
+    private static String[] path(String value) {
+        return value.startsWith("/") ? value.substring(1).split("/") : value.split("/");
+    }
+
+    private static JsonObject object(JsonValue value, String name) {
+        if((value == null) || !value.isObject()) throw new IllegalArgumentException(name + " is not object");
+        return value.asObject();
+    }
+
+    private static String literal(JsonValue value, String name) {
+        if((value == null) || !value.isLiteral()) throw new IllegalArgumentException(name + " is not literal");
+        return value.asLiteral().stringValue();
+    }
+
+    private static long number(JsonValue value, String name) {
+        try {
+            return Long.parseLong(literal(value, name));
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not number");
+        }
+    }
+
+    private static String string(JsonObject object, String name, String defaultValue) {
+        JsonValue value = object.first(name);
+        return (value == null) ? defaultValue : literal(value, name);
+    }
+}
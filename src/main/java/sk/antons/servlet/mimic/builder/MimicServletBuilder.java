@@ -15,7 +15,22 @@
  */
 package sk.antons.servlet.mimic.builder;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import sk.antons.servlet.mimic.MimicSelector;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+import sk.antons.servlet.mimic.processor.DirectoryProcessor;
 import sk.antons.servlet.mimic.MimicServlet;
+import sk.antons.servlet.mimic.processor.LazyContent;
 
 /**
  * Builder for mimic servlet.
@@ -25,6 +40,9 @@ public class MimicServletBuilder {
 
     MimicServlet servlet = MimicServlet.instance();
     String encoding = "utf-8";
+    ResourceLoading loading = ResourceLoading.EAGER;
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    List<MimicSelector> selectors = new ArrayList<>();
 
     /**
      * New instance of builder.
@@ -36,17 +54,129 @@ public class MimicServletBuilder {
      * @return
      */
     public MimicServletBuilder encoding(String value) { this.encoding = value; return this; }
+    /**
+     * Max size of request content kept in memory. Bigger request content
+     * is stored in temporary file while request is processed.
+     * @param value threshold in bytes (default 16MB)
+     * @return this
+     */
+    public MimicServletBuilder memoryThreshold(long value) { this.servlet.memoryThreshold(value); return this; }
     /**
      * Builder for next servlet case configuration
      * @return
      */
-    public SelectorBuilder<MimicServletBuilder> inCase() { return SelectorBuilder.instance(encoding, this, f -> this.servlet.selector(f)); }
+    public SelectorBuilder<MimicServletBuilder> inCase() { return SelectorBuilder.instance(encoding, this, f -> add(f)); }
+    /**
+     * Strategy of reading url resources used by processor() builders.
+     * @param value loading strategy (default EAGER)
+     * @return this
+     * @see ProcessorBuilder#loading(sk.antons.servlet.mimic.builder.ResourceLoading)
+     */
+    public MimicServletBuilder loading(ResourceLoading value) { this.loading = value; return this; }
+    /**
+     * Number of threads used for reading of prefetched resources in build().
+     * @param value number of threads (default number of processors)
+     * @return this
+     */
+    public MimicServletBuilder prefetchThreads(int value) { this.threads = value; return this; }
+    /**
+     * Processor builder with encoding and resource loading of this builder.
+     * @return processor builder
+     */
+    public ProcessorBuilder processor() { return ProcessorBuilder.instance().encoding(encoding).loading(loading); }
+
+    private void add(MimicSelector selector) {
+        selectors.add(selector);
+        servlet.selector(selector);
+    }
 
     /**
-     * Creates servlet
+     * Adds cases defined in json configuration file (or directory).
+     * Configuration is read only once. Use MimicConfig.watch() for reloading.
+     * @param file configuration file or directory
+     * @return this
+     * @see MimicConfig
+     */
+    public MimicServletBuilder config(File file) {
+        for(MimicSelector selector : MimicConfig.instance(file).encoding(encoding).selectors()) {
+            add(selector);
+        }
+        return this;
+    }
+
+    /**
+     * Adds cases stored in binary snapshot. Snapshot is memory mapped and
+     * bodies are served from mapping.
+     * @param file snapshot file
+     * @return this
+     * @see MimicSnapshot
+     */
+    public MimicServletBuilder snapshot(File file) {
+        for(MimicSelector selector : MimicSnapshot.read(file)) {
+            add(selector);
+        }
+        return this;
+    }
+
+    /**
+     * Adds case serving files from directory tree which mirrors request paths.
+     * @param prefix request path prefix mapped to directory
+     * @param root root directory
+     * @return this
+     * @see DirectoryProcessor
+     */
+    public MimicServletBuilder directory(String prefix, File root) { return directory(DirectoryProcessor.instance(root).prefix(prefix)); }
+    /**
+     * Adds case serving files from directory tree. Tree is indexed now
+     * (if processor is not watched already).
+     * @param processor directory processor
+     * @return this
+     */
+    public MimicServletBuilder directory(DirectoryProcessor processor) {
+        if(processor.size() == 0) processor.scan();
+        return inCase().when().path().startsWith(processor.prefix()).or().path().equals(processor.prefix().substring(0, processor.prefix().length() - 1)).done().process(processor);
+    }
+
+    /**
+     * Creates servlet. Prefetched resources are read in parallel before
+     * servlet is returned.
      * @return
      */
-    public MimicServlet build() { return servlet; }
+    public MimicServlet build() {
+        prefetch();
+        return servlet.compile();
+    }
+
+    private void prefetch() {
+        List<Callable<LazyContent>> tasks = new ArrayList<>();
+        for(MimicSelector selector : selectors) {
+            BiPredicate<HttpServletRequest, HttpServletResponse> processor = selector.processor();
+            if(!(processor instanceof ContentProcessor)) continue;
+            if(!(((ContentProcessor)processor).content() instanceof LazyContent)) continue;
+            LazyContent content = (LazyContent)((ContentProcessor)processor).content();
+            if(content.isPrefetched() && !content.isLoaded()) tasks.add(content::prefetch);
+        }
+        if(tasks.isEmpty()) return;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), r -> {
+            Thread thread = new Thread(r, "mimic-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for(Future<LazyContent> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IllegalStateException(cause);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
 
 }
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import sk.antons.servlet.mimic.MimicSelector;
+import sk.antons.servlet.mimic.MimicServlet;
+import sk.antons.servlet.mimic.condition.AndCondition;
+import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.mimic.condition.ConstCondition;
+import sk.antons.servlet.mimic.condition.NamedCondition;
+import sk.antons.servlet.mimic.condition.NotCondition;
+import sk.antons.servlet.mimic.condition.OrCondition;
+import sk.antons.servlet.mimic.condition.StringCondition;
+import sk.antons.servlet.mimic.processor.ByteContent;
+import sk.antons.servlet.mimic.processor.CachedContent;
+import sk.antons.servlet.mimic.processor.Content;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+import sk.antons.servlet.mimic.processor.FileContent;
+import sk.antons.servlet.mimic.processor.Latency;
+import sk.antons.servlet.mimic.processor.LazyContent;
+import sk.antons.servlet.mimic.processor.MappedContent;
+
+/**
+ * Binary snapshot of compiled mimic configuration. Snapshot contains
+ * selector conditions (request attributes, operations and pattern sources),
+ * processor configuration and response bodies with their encoded variants
+ * and etags. Snapshot file is memory mapped when it is read and bodies are
+ * served directly from mapping, so no resource is read and nothing is
+ * encoded or hashed at startup. Dispatch index and pattern matchers are
+ * rebuilt from conditions when servlet is compiled (it is fast compared
+ * to reading of resources).
+ *
+ * Only selectors with conditions created by RequestConditionBuilder and
+ * ContentProcessor with static content (string, stream, file or url) can
+ * be stored. File and url bodies are stored as they are when snapshot is
+ * written. Snapshot file must be smaller than 2GB.
+ *
+ * File layout: magic, version, offset of selectors, bodies, selectors.
+ * Bodies are streamed directly to file when snapshot is written (they
+ * are never collected in memory) and offset of selectors is filled in
+ * when all bodies are written.
+ *
+ * @author antons
+ */
+public class MimicSnapshot {
+
+    private static final byte[] MAGIC = "MIMICSNP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final int HEADER = MAGIC.length + 4 + 8;
+
+    private static final byte CONST = 0;
+    private static final byte NOT = 1;
+    private static final byte AND = 2;
+    private static final byte OR = 3;
+    private static final byte NAMED = 4;
+    private static final byte STRING = 5;
+
+    private static final String[] CONTENT_ATTRIBUTES = {"content", "jsonContent", "streamedJsonContent", "xmlContent", "streamedXmlContent"};
+
+    /**
+     * Writes snapshot of servlet selectors.
+     * @param servlet servlet
+     * @param file snapshot file
+     */
+    public static void write(MimicServlet servlet, File file) { write(servlet.selectors(), file); }
+
+    /**
+     * Writes snapshot of selectors.
+     * @param selectors selectors
+     * @param file snapshot file
+     */
+    public static void write(List<MimicSelector> selectors, File file) {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(0); // offset of selectors is not known yet
+            ((Buffer)header).flip();
+            while(header.hasRemaining()) channel.write(header);
+
+            // selectors are small, bodies are written to file while selectors are collected
+            Bodies bodies = new Bodies(channel);
+            ByteArrayOutputStream meta = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(meta);
+            out.writeInt(selectors.size());
+            for(MimicSelector selector : selectors) {
+                writeCondition(out, selector.condition());
+                writeProcessor(out, selector.processor(), bodies);
+            }
+            out.flush();
+
+            long offset = channel.position();
+            channel.write(ByteBuffer.wrap(meta.toByteArray()));
+            channel.truncate(channel.position());
+            ByteBuffer position = ByteBuffer.allocate(8).putLong(offset);
+            ((Buffer)position).flip();
+            channel.write(position, MAGIC.length + 4);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads selectors from memory mapped snapshot.
+     * @param file snapshot file
+     * @return selectors
+     */
+    public static List<MimicSelector> read(File file) {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("snapshot is too big " + file);
+            // mapping is valid after channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        for(int i = 0; i < magic.length; i++) {
+            if(magic[i] != MAGIC[i]) throw new IllegalArgumentException("not mimic snapshot " + file);
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) throw new IllegalArgumentException("unsupported snapshot version " + version);
+        long meta = buffer.getLong();
+        if((meta < HEADER) || (meta > buffer.limit())) throw new IllegalArgumentException("incomplete snapshot " + file);
+        ((Buffer)buffer).position((int)meta);
+        int bodies = HEADER;
+        int count = buffer.getInt();
+        List<MimicSelector> selectors = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            Condition<HttpServletRequest> condition = readCondition(buffer);
+            ContentProcessor processor = readProcessor(buffer, bodies);
+            selectors.add(MimicSelector.instance().condition(condition).processor(processor));
+        }
+        return selectors;
+    }
+
+    private static void writeCondition(DataOutputStream out, Condition<HttpServletRequest> condition) throws IOException {
+        if(condition instanceof ConstCondition) {
+            out.writeByte(CONST);
+            out.writeBoolean(((ConstCondition)condition).result());
+        } else if(condition instanceof NotCondition) {
+            out.writeByte(NOT);
+            writeCondition(out, ((NotCondition<HttpServletRequest>)condition).condition());
+        } else if(condition instanceof AndCondition) {
+            out.writeByte(AND);
+            writeConditions(out, ((AndCondition<HttpServletRequest>)condition).conditions());
+        } else if(condition instanceof OrCondition) {
+            out.writeByte(OR);
+            writeConditions(out, ((OrCondition<HttpServletRequest>)condition).conditions());
+        } else if(condition instanceof NamedCondition) {
+            out.writeByte(NAMED);
+            writeString(out, ((NamedCondition<HttpServletRequest>)condition).name());
+            writeCondition(out, ((NamedCondition<HttpServletRequest>)condition).condition());
+        } else if((condition instanceof StringCondition) && (((StringCondition)condition).resolver() instanceof RequestResolver)) {
+            StringCondition<HttpServletRequest> cnd = (StringCondition<HttpServletRequest>)condition;
+            RequestResolver resolver = (RequestResolver)cnd.resolver();
+            out.writeByte(STRING);
+            writeString(out, cnd.operation().name());
+            writeString(out, cnd.param());
+            writeString(out, resolver.attribute());
+            String[] args = resolver.args();
+            out.writeInt(args.length);
+            for(String arg : args) writeString(out, arg);
+        } else {
+            throw new IllegalArgumentException("condition can't be stored in snapshot " + condition);
+        }
+    }
+
+    private static void writeConditions(DataOutputStream out, List<Condition<HttpServletRequest>> conditions) throws IOException {
+        out.writeInt(conditions.size());
+        for(Condition<HttpServletRequest> condition : conditions) writeCondition(out, condition);
+    }
+
+    private static Condition<HttpServletRequest> readCondition(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch(type) {
+            case CONST: return ConstCondition.instance(buffer.get() != 0);
+            case NOT: return NotCondition.instance(readCondition(buffer));
+            case AND: return AndCondition.instance(readConditions(buffer));
+            case OR: return OrCondition.instance(readConditions(buffer));
+            case NAMED:
+                String name = readString(buffer);
+                return NamedCondition.instance(readCondition(buffer), name);
+            case STRING:
+                StringCondition.Operation operation = StringCondition.Operation.valueOf(readString(buffer));
+                String param = readString(buffer);
+                String attribute = readString(buffer);
+                String[] args = new String[buffer.getInt()];
+                for(int i = 0; i < args.length; i++) args[i] = readString(buffer);
+                String encoding = isContent(attribute) ? args[0] : "utf-8";
+                Condition<HttpServletRequest>[] rv = new Condition[1];
+                RequestConditionBuilder<Object> builder = RequestConditionBuilder.instance(encoding, null, c -> rv[0] = c);
+                builder.attribute(attribute, args).operation(operation, param);
+                builder.done();
+                return rv[0];
+            default: throw new IllegalArgumentException("bad snapshot condition type " + type);
+        }
+    }
+
+    private static List<Condition<HttpServletRequest>> readConditions(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<Condition<HttpServletRequest>> list = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) list.add(readCondition(buffer));
+        return list;
+    }
+
+    private static void writeProcessor(DataOutputStream out, BiPredicate<HttpServletRequest, HttpServletResponse> value, Bodies bodies) throws IOException {
+        if(!(value instanceof ContentProcessor)) throw new IllegalArgumentException("processor can't be stored in snapshot " + value);
+        ContentProcessor processor = (ContentProcessor)value;
+        writeString(out, processor.name());
+        out.writeInt(processor.status());
+        out.writeLong(processor.length());
+        writeString(out, processor.contentType());
+        List<String[]> headers = processor.headers();
+        out.writeInt(headers.size());
+        for(String[] header : headers) {
+            writeString(out, header[0]);
+            writeString(out, header[1]);
+        }
+        Content content = processor.content();
+        out.writeBoolean(content != null);
+        if(content != null) {
+            writeBody(out, content, bodies, processor);
+            // variants which do not reduce content are not stored
+            Map<String, Content> variants = new LinkedHashMap<>();
+            for(Map.Entry<String, Content> entry : processor.variants().entrySet()) {
+                if(entry.getValue().resolve(null) != null) variants.put(entry.getKey(), entry.getValue());
+            }
+            out.writeInt(variants.size());
+            for(Map.Entry<String, Content> entry : variants.entrySet()) {
+                writeString(out, entry.getKey());
+                writeBody(out, entry.getValue(), bodies, processor);
+            }
+        }
+        out.writeBoolean(processor.isConditional());
+        out.writeBoolean(processor.isRanges());
+        out.writeBoolean(processor.isAsync());
+        Latency delay = processor.delay();
+        out.writeLong(delay == null ? -1 : delay.p50());
+        out.writeLong(delay == null ? -1 : delay.p99());
+        out.writeLong(processor.bandwidth());
+    }
+
+    private static ContentProcessor readProcessor(ByteBuffer buffer, int bodies) {
+        String name = readString(buffer);
+        int status = buffer.getInt();
+        long length = buffer.getLong();
+        String contentType = readString(buffer);
+        int count = buffer.getInt();
+        List<String[]> headers = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) headers.add(new String[] {readString(buffer), readString(buffer)});
+        Content content = null;
+        Map<String, Content> variants = new LinkedHashMap<>();
+        if(buffer.get() != 0) {
+            content = readBody(buffer, bodies);
+            count = buffer.getInt();
+            for(int i = 0; i < count; i++) {
+                String encoding = readString(buffer);
+                variants.put(encoding, readBody(buffer, bodies));
+            }
+        }
+        boolean conditional = buffer.get() != 0;
+        boolean ranges = buffer.get() != 0;
+        boolean async = buffer.get() != 0;
+        long p50 = buffer.getLong();
+        long p99 = buffer.getLong();
+        long bandwidth = buffer.getLong();
+        Latency delay = (p50 < 0) ? null : Latency.percentiles(p50, p99);
+        return ContentProcessor.instance(name, status, length, contentType, headers, content, variants, conditional, ranges, async, delay, bandwidth);
+    }
+
+    private static void writeBody(DataOutputStream out, Content content, Bodies bodies, ContentProcessor processor) throws IOException {
+        Content stat = (content instanceof LazyContent) ? ((LazyContent)content).content() : content;
+        if(!((stat instanceof ByteContent) || (stat instanceof CachedContent) || (stat instanceof FileContent))) {
+            throw new IllegalArgumentException("content of " + processor + " can't be stored in snapshot " + content);
+        }
+        long[] body = bodies.add(stat);
+        out.writeLong(body[0]);
+        out.writeInt((int)body[1]);
+        writeString(out, stat.etag());
+        out.writeLong(stat.lastModified());
+    }
+
+    private static Content readBody(ByteBuffer buffer, int bodies) {
+        long offset = buffer.getLong();
+        int length = buffer.getInt();
+        String etag = readString(buffer);
+        long modified = buffer.getLong();
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer)view).position(bodies + (int)offset);
+        ((Buffer)view).limit(bodies + (int)offset + length);
+        return MappedContent.instance(view, etag, modified);
+    }
+
+    private static boolean isContent(String attribute) {
+        for(String name : CONTENT_ATTRIBUTES) {
+            if(name.equals(attribute)) return true;
+        }
+        return false;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0) return null;
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Body region. Bodies are streamed to file and same bodies are stored
+     * only once (body with already stored digest is overwritten by next one).
+     */
+    private static class Bodies {
+        private final FileChannel channel;
+        private final Map<String, long[]> stored = new HashMap<>();
+        private long size = 0;
+
+        private Bodies(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // offset (relative to body region) and length of body
+        private long[] add(Content content) throws IOException {
+            long start = channel.position();
+            MessageDigest digest = digest();
+            // channel stream is not closed, channel is used for next bodies
+            OutputStream os = new BufferedOutputStream(new DigestOutputStream(Channels.newOutputStream(channel), digest), 64 * 1024);
+            content.write(os);
+            os.flush();
+            long length = channel.position() - start;
+            String key = Base64.getEncoder().encodeToString(digest.digest()) + ":" + length;
+            long[] rv = stored.get(key);
+            if(rv != null) {
+                channel.position(start);
+                return rv;
+            }
+            rv = new long[] {size, length};
+            stored.put(key, rv);
+            size = size + length;
+            if(HEADER + size > Integer.MAX_VALUE) throw new IllegalArgumentException("snapshot is too big");
+            return rv;
+        }
+
+        private static MessageDigest digest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch(NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
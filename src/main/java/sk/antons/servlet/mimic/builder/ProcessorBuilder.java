@@ -22,14 +22,28 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiPredicate;
 import java.util.function.Supplier;
 import sk.antons.jaul.binary.Bytes;
 import sk.antons.jaul.util.AsRuntimeEx;
 import sk.antons.jaul.util.Resource;
 import sk.antons.jaul.util.TextFile;
+import sk.antons.servlet.mimic.processor.ByteContent;
+import sk.antons.servlet.mimic.processor.CachedContent;
+import sk.antons.servlet.mimic.processor.Compression;
+import sk.antons.servlet.mimic.processor.Content;
+import sk.antons.servlet.mimic.processor.ContentCache;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+import sk.antons.servlet.mimic.processor.FileContent;
+import sk.antons.servlet.mimic.processor.GeneratedContent;
+import sk.antons.servlet.mimic.processor.Latency;
+import sk.antons.servlet.mimic.processor.LazyContent;
+import sk.antons.servlet.mimic.processor.StreamContent;
 
 /**
  * Helper class for mimic processor creation.
@@ -65,6 +79,12 @@ public class ProcessorBuilder {
      * @return this
      */
     public ProcessorBuilder length(int value) { processor.length = value; return this; }
+    /**
+     * response length. (negative value means length of content)
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder length(long value) { processor.length = value; return this; }
     /**
      * response content type.
      * @param value
@@ -78,6 +98,83 @@ public class ProcessorBuilder {
      * @return this
      */
     public ProcessorBuilder header(String name, String value) { processor.headers.add(Header.instance(name, value)); return this; }
+    /**
+     * Content cache for file and url contents. Url contents are cached
+     * in shared cache by default and file contents are not cached by default.
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder cache(ContentCache value) { processor.cache = value; return this; }
+    /**
+     * If true (default) ETag and Last-Modified headers are sent for static
+     * content and If-None-Match or If-Modified-Since requests are answered
+     * by 304 without content.
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder conditional(boolean value) { processor.conditional = value; return this; }
+    /**
+     * If true (default) Range requests for file, stream and url contents
+     * are answered by partial content (206).
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder ranges(boolean value) { processor.ranges = value; return this; }
+    /**
+     * If true file, stream and url contents are written asynchronously
+     * (servlet must support async processing). Container thread is released
+     * and content is written by chunks when client is ready to receive them.
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder async(boolean value) { processor.async = value; return this; }
+    /**
+     * Fixed response delay. Request thread is not blocked during delay
+     * if servlet supports async processing.
+     * @param millis delay in milliseconds
+     * @return this
+     */
+    public ProcessorBuilder delay(long millis) { processor.delay = Latency.fixed(millis); return this; }
+    /**
+     * Response delay with log-normal distribution. Request thread is not
+     * blocked during delay if servlet supports async processing.
+     * @param p50 median delay in milliseconds
+     * @param p99 99th percentile of delay in milliseconds
+     * @return this
+     */
+    public ProcessorBuilder delay(long p50, long p99) { processor.delay = Latency.percentiles(p50, p99); return this; }
+    /**
+     * Max bytes per second for file, stream and url contents. Content is
+     * written asynchronously (servlet must support async processing).
+     * @param bytesPerSecond bandwidth (0 means unlimited)
+     * @return this
+     */
+    public ProcessorBuilder bandwidth(long bytesPerSecond) { processor.bandwidth = bytesPerSecond; return this; }
+    /**
+     * Strategy of reading resources of textContentFromUrl() and templateFromUrl().
+     * Lazy resources are read once by first request (concurrent first requests
+     * wait for one read). Prefetched resources are read in parallel when servlet
+     * is built by MimicServletBuilder.
+     * @param value loading strategy (default EAGER)
+     * @return this
+     */
+    public ProcessorBuilder loading(ResourceLoading value) { processor.loading = value; return this; }
+    /**
+     * Prepares compressed variants of static and cached content (gzip and
+     * deflate are supported). Variant is selected by Accept-Encoding header
+     * and it is not used if it is not smaller than original content.
+     * @param encodings content codings in preferred order (gzip and deflate if none is given)
+     * @return this
+     */
+    public ProcessorBuilder compress(String... encodings) {
+        processor.encodings.clear();
+        if((encodings == null) || (encodings.length == 0)) encodings = new String[] {Compression.GZIP, Compression.DEFLATE};
+        for(String encoding : encodings) {
+            if(!Compression.isSupported(encoding)) throw new IllegalArgumentException("unsupported content encoding " + encoding);
+            processor.encodings.add(encoding);
+        }
+        return this;
+    }
     /**
      * response content as stream. (Also content length is set)
      * @param value
@@ -86,7 +183,7 @@ public class ProcessorBuilder {
     public ProcessorBuilder content(InputStream value) {
         processor.name("is");
         final byte[] data = Bytes.fromStream(value);
-        processor.content = () -> new ByteArrayInputStream(data);
+        processor.content = ByteContent.instance(data);
         processor.length = data.length;
         return this;
     }
@@ -98,7 +195,7 @@ public class ProcessorBuilder {
     public ProcessorBuilder content(String value) {
         processor.name("string");
         final byte[] data = processor.toBytes(value);
-        processor.content = () -> new ByteArrayInputStream(data);
+        processor.content = ByteContent.instance(data);
         processor.length = data.length;
         return this;
     }
@@ -109,44 +206,104 @@ public class ProcessorBuilder {
      */
     public ProcessorBuilder content(Supplier<String> value) {
         processor.name("string");
-        processor.content = () -> {
+        processor.content = StreamContent.instance(() -> {
             final byte[] data = processor.toBytes(value.get());
             return new ByteArrayInputStream(data);
-        };
+        });
         processor.length = 0;
         return this;
     }
+    /**
+     * response content as template. Template is compiled once and placeholders
+     * like ${path:1}, ${param:name}, ${header:name}, ${json:a/b} or ${xml:a/b}
+     * are filled from request. (Also content length is set)
+     * @param value template text
+     * @return this
+     */
+    public ProcessorBuilder template(String value) {
+        processor.name("template");
+        processor.content = TemplateCompiler.compile(value, processor.encoding);
+        processor.length = -1;
+        return this;
+    }
+    /**
+     * response content as template defined by url.
+     * @param url (like /foo/bar for file and classpath:META_INF/data.json for classpath)
+     * @return this
+     * @see #template(java.lang.String)
+     */
+    public ProcessorBuilder templateFromUrl(String url) {
+        processor.name("template: " + url);
+        processor.resource(null, url);
+        return this;
+    }
+    /**
+     * response content as generated random bytes. Content is generated
+     * by chunks while it is written and same seed gives same content.
+     * @param length content length
+     * @param seed random seed
+     * @return this
+     */
+    public ProcessorBuilder generatedBytes(long length, long seed) { return generated(GeneratedContent.bytes(length, seed)); }
+    /**
+     * response content as generated json array of objects like
+     * {"id":"0001","value":"x4Tz..."}. Content is generated by chunks while
+     * it is written and same seed gives same content.
+     * @param count number of array elements
+     * @param valueLength length of random value in each element
+     * @param seed random seed
+     * @return this
+     */
+    public ProcessorBuilder generatedJsonArray(long count, int valueLength, long seed) { return generated(GeneratedContent.jsonArray(count, valueLength, seed)); }
+    /**
+     * response content as generated csv rows like 0001,x4Tz... Content is
+     * generated by chunks while it is written and same seed gives same content.
+     * @param count number of rows
+     * @param valueLength length of random value in each row
+     * @param seed random seed
+     * @return this
+     */
+    public ProcessorBuilder generatedCsv(long count, int valueLength, long seed) { return generated(GeneratedContent.csv(count, valueLength, seed)); }
+    /**
+     * response content as generated content. (Also content length is set)
+     * @param value
+     * @return this
+     */
+    public ProcessorBuilder generated(GeneratedContent value) {
+        processor.name("generated: " + value);
+        processor.content = value;
+        processor.length = -1;
+        return this;
+    }
     /**
      * response content as file. (Also content length is set)
+     * File is read by shared channel and actual file size is used
+     * for each request. If cache is configured, file is served from
+     * cache until it is changed.
      * @param value
      * @return this
      */
     public ProcessorBuilder content(File value) {
         processor.name("file: " + value.getAbsolutePath());
-        processor.length = (int)value.length();
-        processor.content = () -> {
-            try {
-                return new FileInputStream(value);
-            } catch(Exception e) {
-                throw AsRuntimeEx.argument(e);
-            }
-        };
+        processor.length = -1;
+        processor.content = null;
+        processor.url = null;
+        processor.file = value;
         return this;
     }
     /**
      * response content as resource defined by url. (Also content length is set)
+     * Content is served from cache (shared by default) and file resources
+     * are reloaded if they are changed.
      * @param url (like /foo/bar for file and classpath:META_INF/data.json for classpath)
      * @return this
      */
     public ProcessorBuilder byteContentFromUrl(String url) {
         processor.name("url: " + url);
-        processor.content = () -> {
-            try {
-                return Resource.url(url).inputStream();
-            } catch(Exception e) {
-                throw AsRuntimeEx.argument(e);
-            }
-        };
+        processor.length = -1;
+        processor.content = null;
+        processor.file = null;
+        processor.url = url;
         return this;
     }
     /**
@@ -156,57 +313,131 @@ public class ProcessorBuilder {
      */
     public ProcessorBuilder textContentFromUrl(String url) {
         processor.name("url: " + url);
-        try {
-            String text = TextFile.read(Resource.url(url).inputStream(), "utf-8");
-            byte[] data = processor.toBytes(text);
-            processor.content = () -> new ByteArrayInputStream(data);
-            processor.length = data.length;
-        } catch(Exception e) {
-            throw new IllegalStateException(e);
-        }
+        processor.resource(url, null);
         return this;
     }
-    public BiPredicate<HttpServletRequest, HttpServletResponse> build() { return processor; }
+    /**
+     * Creates processor. Configuration is frozen, so static content is
+     * prepared only once and written directly from bytes.
+     * @return processor
+     */
+    public BiPredicate<HttpServletRequest, HttpServletResponse> build() { return processor.build(); }
 
 
-    private static class Processor implements BiPredicate<HttpServletRequest, HttpServletResponse> {
+    /**
+     * Processor configuration.
+     */
+    private static class Processor {
 
         String name = null;
         String encoding = "utf-8";
         int status = 200;
-        int length = 0;
+        long length = 0;
         String contentType = null;
-        Supplier<InputStream> content = null;
+        Content content = null;
+        File file = null;
+        String url = null;
+        ContentCache cache = null;
         List<Header> headers = new ArrayList<>();
+        List<String> encodings = new ArrayList<>();
+        boolean conditional = true;
+        boolean ranges = true;
+        boolean async = false;
+        Latency delay = null;
+        long bandwidth = 0;
+        String textUrl = null;
+        String templateUrl = null;
+        ResourceLoading loading = ResourceLoading.EAGER;
 
         private Processor name(String value) { this.name = (this.name == null) ?  value : this.name; return this;}
 
         public static Processor instance() { return new Processor(); }
 
-        @Override
-        public boolean test(HttpServletRequest req, HttpServletResponse res) {
-            if(contentType != null) res.setContentType(contentType);
-            res.setContentLength(length);
-            res.setStatus(status);
+        private void resource(String text, String template) {
+            this.length = -1;
+            this.content = null;
+            this.file = null;
+            this.url = null;
+            this.textUrl = text;
+            this.templateUrl = template;
+        }
+
+        private ContentProcessor build() {
+            List<String[]> list = new ArrayList<>();
             for(Header header : headers) {
-                res.addHeader(header.name, header.value);
+                list.add(new String[] {header.name, header.value});
             }
-            if(contentType != null) {
-                try {
-                    InputStream is = content.get();
-                    ServletOutputStream os = res.getOutputStream();
-                    byte[] buf = new byte[8192];
-                    int len;
-                    while ((len = is.read(buf)) != -1) {
-                        os.write(buf, 0, len);
+            Content body = content();
+            Map<String, Content> variants = new LinkedHashMap<>();
+            if(body != null) {
+                for(String encoding : encodings) {
+                    Content variant = body.encoded(encoding);
+                    if(variant != null) variants.put(encoding, variant);
+                }
+            }
+            return ContentProcessor.instance(name, status, length, contentType, list, body, variants, conditional, ranges, async, delay, bandwidth);
+        }
+
+        private Content content() {
+            if(content != null) return content;
+            if(file != null) {
+                if(cache == null) return FileContent.instance(file);
+                final File f = file;
+                return CachedContent.instance(cache, "file:" + f.getAbsolutePath(), f, () -> {
+                    try {
+                        return new FileInputStream(f);
+                    } catch(Exception e) {
+                        throw AsRuntimeEx.argument(e);
+                    }
+                });
+            }
+            if(url != null) {
+                final String u = url;
+                return CachedContent.instance(cache == null ? ContentCache.shared() : cache, u, urlFile(u), () -> {
+                    try {
+                        return Resource.url(u).inputStream();
+                    } catch(Exception e) {
+                        throw AsRuntimeEx.argument(e);
                     }
-                    os.flush();
-                    is.close();
+                });
+            }
+            if(textUrl != null) {
+                final String u = textUrl;
+                if(loading == ResourceLoading.EAGER) return ByteContent.instance(toBytes(read(u)));
+                return LazyContent.instance(() -> ByteContent.instance(toBytes(read(u))), false, true)
+                    .prefetched(loading == ResourceLoading.PREFETCH);
+            }
+            if(templateUrl != null) {
+                final String u = templateUrl;
+                if(loading == ResourceLoading.EAGER) return TemplateCompiler.compile(read(u), encoding);
+                // template is not known yet, so it is expected to read request content
+                return LazyContent.instance(() -> TemplateCompiler.compile(read(u), encoding), true, false)
+                    .prefetched(loading == ResourceLoading.PREFETCH);
+            }
+            return null;
+        }
+
+        private static String read(String url) {
+            try {
+                return TextFile.read(Resource.url(url).inputStream(), "utf-8");
+            } catch(Exception e) {
+                throw new IllegalStateException(url, e);
+            }
+        }
+
+        // file of url resource used for change detection (null if resource is not file)
+        private static File urlFile(String url) {
+            if(url.startsWith("classpath:")) {
+                URL resource = Thread.currentThread().getContextClassLoader().getResource(url.substring(10));
+                if((resource == null) || !"file".equals(resource.getProtocol())) return null;
+                try {
+                    return new File(resource.toURI());
                 } catch(Exception e) {
-                    throw new IllegalStateException(e);
+                    return null;
                 }
             }
-            return true;
+            if(url.startsWith("file:")) url = url.substring(5);
+            return new File(url);
         }
 
         private byte[] toBytes(String value) {
@@ -16,11 +16,8 @@
 package sk.antons.servlet.mimic.builder;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.InputStream;
+import java.util.Arrays;
 import java.util.function.Consumer;
-import sk.antons.jaul.util.TextFile;
-import sk.antons.jaul.xml.Elem;
-import sk.antons.json.parse.JsonParser;
 import sk.antons.servlet.mimic.condition.Condition;
 import sk.antons.servlet.mimic.condition.ConditionBuilder;
 import sk.antons.servlet.mimic.condition.ConstCondition;
@@ -47,9 +44,19 @@ import sk.antons.servlet.mimic.condition.ConstCondition;
  * @author antons
  */
 public class RequestConditionBuilder<C> {
+    /**
+     * Resolver used by path() and uri() conditions. (it is recognized by selector index)
+     */
+    public static final RequestResolver PATH = RequestResolver.plain("path", RequestResolver.ATTRIBUTE, r -> r.getRequestURI());
+    /**
+     * Resolver used by method() conditions. (it is recognized by selector index)
+     */
+    public static final RequestResolver METHOD = RequestResolver.plain("method", RequestResolver.ATTRIBUTE, r -> r.getMethod());
+
     C backReference;
     Consumer<Condition<HttpServletRequest>> consumer;
     String encoding;
+    private final BodyDocuments documents;
 
     ConditionBuilder<HttpServletRequest> builder = ConditionBuilder.instance(HttpServletRequest.class);
 
@@ -57,6 +64,7 @@ public class RequestConditionBuilder<C> {
         this.backReference = back;
         this.consumer = consumer;
         this.encoding = encoding;
+        this.documents = BodyDocuments.instance(encoding);
     }
 
     public static <T> RequestConditionBuilder<T> instance(String encoding, T back, Consumer<Condition<HttpServletRequest>> consumer) { return new RequestConditionBuilder(encoding, back, consumer); }
@@ -73,45 +81,108 @@ public class RequestConditionBuilder<C> {
     public RequestConditionBuilder<C> lb() { builder.lb(); return this; }
     public RequestConditionBuilder<C> rb() { builder.rb(); return this; }
 
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> path() { return StringConditionBuilder.instance(this, r -> r.getRequestURI(), c -> builder.add(c), "path"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> method() { return StringConditionBuilder.instance(this, r -> r.getMethod(), c -> builder.add(c), "method"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> header(final String key) { return StringConditionBuilder.instance(this, r -> r.getHeader(key), c -> builder.add(c), "header["+key+"]"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> param(final String key) { return StringConditionBuilder.instance(this, r -> r.getParameter(key), c -> builder.add(c), "param["+key+"]"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> contentType() { return StringConditionBuilder.instance(this, r -> r.getContentType(), c -> builder.add(c), "contentType"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> contextPath() { return StringConditionBuilder.instance(this, r -> r.getContextPath(), c -> builder.add(c), "contextPath"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> localAddr() { return StringConditionBuilder.instance(this, r -> r.getLocalAddr(), c -> builder.add(c), "localAddr"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> localName() { return StringConditionBuilder.instance(this, r -> r.getLocalName(), c -> builder.add(c), "localName"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> pathTranslated() { return StringConditionBuilder.instance(this, r -> r.getPathTranslated(), c -> builder.add(c), "pathTranslated"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> queryString() { return StringConditionBuilder.instance(this, r -> r.getQueryString(), c -> builder.add(c), "queryString"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteAddr() { return StringConditionBuilder.instance(this, r -> r.getRemoteAddr(), c -> builder.add(c), "remoteAddr"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteHost() { return StringConditionBuilder.instance(this, r -> r.getRemoteHost(), c -> builder.add(c), "remoteHost"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteUser() { return StringConditionBuilder.instance(this, r -> r.getRemoteUser(), c -> builder.add(c), "remoteUser"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> uri() { return StringConditionBuilder.instance(this, r -> r.getRequestURI(), c -> builder.add(c), "uri"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> schema() { return StringConditionBuilder.instance(this, r -> r.getScheme(), c -> builder.add(c), "schema"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> servletPath() { return StringConditionBuilder.instance(this, r -> r.getServletPath(), c -> builder.add(c), "servletPath"); }
-    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> pathInfo() { return StringConditionBuilder.instance(this, r -> r.getPathInfo(), c -> builder.add(c), "servletPath"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> path() { return StringConditionBuilder.instance(this, PATH, c -> builder.add(c), "path"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> method() { return StringConditionBuilder.instance(this, METHOD, c -> builder.add(c), "method"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> header(final String key) { return StringConditionBuilder.instance(this, RequestResolver.cached("header", RequestResolver.HEADER, r -> r.getHeader(key), key), c -> builder.add(c), "header["+key+"]"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> param(final String key) { return StringConditionBuilder.instance(this, RequestResolver.cached("param", RequestResolver.PARAM, r -> r.getParameter(key), key), c -> builder.add(c), "param["+key+"]"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> contentType() { return StringConditionBuilder.instance(this, RequestResolver.plain("contentType", RequestResolver.ATTRIBUTE, r -> r.getContentType()), c -> builder.add(c), "contentType"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> contextPath() { return StringConditionBuilder.instance(this, RequestResolver.plain("contextPath", RequestResolver.ATTRIBUTE, r -> r.getContextPath()), c -> builder.add(c), "contextPath"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> localAddr() { return StringConditionBuilder.instance(this, RequestResolver.plain("localAddr", RequestResolver.ATTRIBUTE, r -> r.getLocalAddr()), c -> builder.add(c), "localAddr"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> localName() { return StringConditionBuilder.instance(this, RequestResolver.plain("localName", RequestResolver.ATTRIBUTE, r -> r.getLocalName()), c -> builder.add(c), "localName"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> pathTranslated() { return StringConditionBuilder.instance(this, RequestResolver.plain("pathTranslated", RequestResolver.ATTRIBUTE, r -> r.getPathTranslated()), c -> builder.add(c), "pathTranslated"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> queryString() { return StringConditionBuilder.instance(this, RequestResolver.plain("queryString", RequestResolver.ATTRIBUTE, r -> r.getQueryString()), c -> builder.add(c), "queryString"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteAddr() { return StringConditionBuilder.instance(this, RequestResolver.plain("remoteAddr", RequestResolver.ATTRIBUTE, r -> r.getRemoteAddr()), c -> builder.add(c), "remoteAddr"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteHost() { return StringConditionBuilder.instance(this, RequestResolver.plain("remoteHost", RequestResolver.ATTRIBUTE, r -> r.getRemoteHost()), c -> builder.add(c), "remoteHost"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> remoteUser() { return StringConditionBuilder.instance(this, RequestResolver.plain("remoteUser", RequestResolver.ATTRIBUTE, r -> r.getRemoteUser()), c -> builder.add(c), "remoteUser"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> uri() { return StringConditionBuilder.instance(this, PATH, c -> builder.add(c), "uri"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> schema() { return StringConditionBuilder.instance(this, RequestResolver.plain("schema", RequestResolver.ATTRIBUTE, r -> r.getScheme()), c -> builder.add(c), "schema"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> servletPath() { return StringConditionBuilder.instance(this, RequestResolver.plain("servletPath", RequestResolver.ATTRIBUTE, r -> r.getServletPath()), c -> builder.add(c), "servletPath"); }
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> pathInfo() { return StringConditionBuilder.instance(this, RequestResolver.plain("pathInfo", RequestResolver.ATTRIBUTE, r -> r.getPathInfo()), c -> builder.add(c), "servletPath"); }
 
     public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> content() {
         return StringConditionBuilder.instance(this
-            , r -> { try { return fromIS(r.getInputStream()); } catch (Exception e) { return e.getMessage(); }}
+            , documents.text()
             , c -> builder.add(c)
             , "content");
     }
     public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> jsonContent(String... path) {
         return StringConditionBuilder.instance(this
-            , r -> { try { return JsonParser.parse(fromIS(r.getInputStream())).find(path).firstLiteral(); } catch (Exception e) { return e.getMessage(); }}
+            , RequestResolver.cached("jsonContent", RequestResolver.DOCUMENT, r -> { try { return documents.json(r).find(path).firstLiteral(); } catch (Exception e) { return e.getMessage(); }}, args(encoding, path))
             , c -> builder.add(c)
             , "jsonContent " + array(path));
     }
+    /**
+     * Same as jsonContent(path), but value is read directly from request
+     * content stream. Reading stops on first value found and no json tree
+     * is created. It is useful for big requests and one value conditions.
+     * @param path json path
+     * @return condition builder
+     */
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> streamedJsonContent(String... path) {
+        final JsonPathReader reader = JsonPathReader.instance(path);
+        return StringConditionBuilder.instance(this
+            , RequestResolver.cached("streamedJsonContent", RequestResolver.STREAM, r -> { try { return reader.firstLiteral(documents.reader(r)); } catch (Exception e) { return e.getMessage(); }}, args(encoding, path))
+            , c -> builder.add(c)
+            , "streamedJsonContent " + array(path));
+    }
     public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> xmlContent(String... path) {
         return StringConditionBuilder.instance(this
-            , r -> { try { return Elem.parse(fromIS(r.getInputStream())).find(path).firstText(); } catch (Exception e) { return e.getMessage(); }}
+            , RequestResolver.cached("xmlContent", RequestResolver.DOCUMENT, r -> { try { return documents.xml(r).find(path).firstText(); } catch (Exception e) { return e.getMessage(); }}, args(encoding, path))
             , c -> builder.add(c)
             , "xmlContent " + array(path));
     }
+    /**
+     * Text of first xml element on path. Value is read directly from request
+     * content stream and reading stops on first text found. No xml tree is created.
+     * Path starts with root element and items are matched by local names
+     * (like "Envelope", "Body", "order", "id"). Last item "@name" selects
+     * attribute of found element.
+     * @param path xml path
+     * @return condition builder
+     */
+    public StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> streamedXmlContent(String... path) {
+        final XmlPathReader reader = XmlPathReader.instance(path);
+        return StringConditionBuilder.instance(this
+            , RequestResolver.cached("streamedXmlContent", RequestResolver.STREAM, r -> { try { return reader.firstText(documents.reader(r)); } catch (Exception e) { return e.getMessage(); }}, args(encoding, path))
+            , c -> builder.add(c)
+            , "streamedXmlContent " + array(path));
+    }
 
     public RequestConditionBuilder<C> any() { builder.add(ConstCondition.instance(true)); return this; }
 
+    /**
+     * Condition builder for resolver identified by attribute and arguments
+     * (see RequestResolver.attribute() and args()). Content attributes
+     * have encoding as first argument, so builder must use same encoding.
+     */
+    StringConditionBuilder<RequestConditionBuilder<C>, HttpServletRequest> attribute(String attribute, String[] args) {
+        String[] rest = (args.length > 0) ? Arrays.copyOfRange(args, 1, args.length) : args;
+        switch(attribute) {
+            case "path": return path();
+            case "method": return method();
+            case "header": return header(args[0]);
+            case "param": return param(args[0]);
+            case "contentType": return contentType();
+            case "contextPath": return contextPath();
+            case "localAddr": return localAddr();
+            case "localName": return localName();
+            case "pathTranslated": return pathTranslated();
+            case "queryString": return queryString();
+            case "remoteAddr": return remoteAddr();
+            case "remoteHost": return remoteHost();
+            case "remoteUser": return remoteUser();
+            case "schema": return schema();
+            case "servletPath": return servletPath();
+            case "pathInfo": return pathInfo();
+            case "content": return content();
+            case "jsonContent": return jsonContent(rest);
+            case "streamedJsonContent": return streamedJsonContent(rest);
+            case "xmlContent": return xmlContent(rest);
+            case "streamedXmlContent": return streamedXmlContent(rest);
+            default: throw new IllegalArgumentException("unknown request attribute " + attribute);
+        }
+    }
+
 
     private String array(String[] path) {
         StringBuilder sb = new StringBuilder();
@@ -124,11 +195,11 @@ public class RequestConditionBuilder<C> {
         sb.append(']');
         return sb.toString();
     }
-    private String fromIS(InputStream is) {
-        try {
-            return TextFile.read(is, encoding);
-        } catch(Exception e) {
-            return e.getMessage();
-        }
+    private static String[] args(String first, String[] rest) {
+        int len = (rest == null) ? 0 : rest.length;
+        String[] rv = new String[len + 1];
+        rv[0] = first;
+        if(len > 0) System.arraycopy(rest, 0, rv, 1, len);
+        return rv;
     }
 }
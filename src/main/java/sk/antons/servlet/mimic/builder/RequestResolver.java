@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.function.Function;
+import sk.antons.servlet.mimic.condition.Costed;
+import sk.antons.servlet.util.EvaluationContext;
+
+/**
+ * Resolver of request attribute used by conditions. Resolvers are identified
+ * by attribute name and arguments (like header name), so two resolvers for same
+ * attribute are equal. If resolver is cached, resolved value is stored in
+ * request evaluation context and it is computed only once per request.
+ * @author antons
+ */
+public class RequestResolver implements Function<HttpServletRequest, String>, Costed {
+
+    /** cost of simple request attribute like method or path */
+    public static final int ATTRIBUTE = 1;
+    /** cost of header value */
+    public static final int HEADER = 2;
+    /** cost of parameter value (form parameters can be read from content) */
+    public static final int PARAM = 5;
+    /** cost of reading whole content */
+    public static final int CONTENT = 10;
+    /** cost of streamed search in content */
+    public static final int STREAM = 15;
+    /** cost of parsing content to document */
+    public static final int DOCUMENT = 20;
+
+    private final String attribute;
+    private final String[] args;
+    private final Function<HttpServletRequest, String> resolver;
+    private final boolean cached;
+    private final int cost;
+    private final int hash;
+
+    private RequestResolver(String attribute, int cost, String[] args, Function<HttpServletRequest, String> resolver, boolean cached) {
+        this.attribute = attribute;
+        this.cost = cost;
+        this.args = (args == null) ? new String[0] : args.clone();
+        this.resolver = resolver;
+        this.cached = cached;
+        this.hash = 31 * attribute.hashCode() + Arrays.hashCode(this.args);
+    }
+
+    /**
+     * Resolver which computes value by each call.
+     * @param attribute attribute name
+     * @param cost evaluation cost
+     * @param resolver value resolver (without side effects)
+     * @param args attribute arguments
+     * @return resolver
+     */
+    public static RequestResolver plain(String attribute, int cost, Function<HttpServletRequest, String> resolver, String... args) { return new RequestResolver(attribute, cost, args, resolver, false); }
+    /**
+     * Resolver which computes value once per request.
+     * @param attribute attribute name
+     * @param cost evaluation cost
+     * @param resolver value resolver (without side effects)
+     * @param args attribute arguments
+     * @return resolver
+     */
+    public static RequestResolver cached(String attribute, int cost, Function<HttpServletRequest, String> resolver, String... args) { return new RequestResolver(attribute, cost, args, resolver, true); }
+
+    public String attribute() { return attribute; }
+    public String[] args() { return args.clone(); }
+    public boolean isCached() { return cached; }
+    @Override
+    public int cost() { return cost; }
+
+    @Override
+    public String apply(HttpServletRequest request) {
+        if(!cached) return resolver.apply(request);
+        EvaluationContext context = EvaluationContext.of(request);
+        if(context == null) return resolver.apply(request);
+        return context.value(this, resolver, request);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) return true;
+        if(!(obj instanceof RequestResolver)) return false;
+        RequestResolver other = (RequestResolver)obj;
+        return attribute.equals(other.attribute) && Arrays.equals(args, other.args);
+    }
+
+    @Override
+    public String toString() {
+        return attribute + (args.length == 0 ? "" : Arrays.toString(args));
+    }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+/**
+ * Strategy of reading url resources (textContentFromUrl and templateFromUrl).
+ * @author antons
+ */
+public enum ResourceLoading {
+    /** resource is read when processor is built */
+    EAGER,
+    /** resource is read by first request which uses it */
+    LAZY,
+    /** resource is read in parallel with other resources when servlet is built */
+    PREFETCH
+}
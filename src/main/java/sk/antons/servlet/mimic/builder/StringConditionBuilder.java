@@ -44,6 +44,8 @@ public class StringConditionBuilder<C, T> {
         return backReference;
     }
 
+    C operation(Operation op, String param) { return contition(op, param); }
+
     public C contains(String param) { return contition(Operation.CONTAINS, param); }
     public C startsWith(String param) { return contition(Operation.STARTS_WITH, param); }
     public C endsWitn(String param) { return contition(Operation.ENDS_WITH, param); }
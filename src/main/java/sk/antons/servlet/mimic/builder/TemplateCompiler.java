@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import sk.antons.servlet.mimic.processor.TemplateContent;
+
+/**
+ * Compiles response template to literal segments and placeholder slots.
+ *
+ * Placeholders have form ${source:argument}
+ * <ul>
+ * <li>${path:1} - request path segment (starting by 0)</li>
+ * <li>${param:name} - request parameter</li>
+ * <li>${header:name} - request header</li>
+ * <li>${json:a/b/0/c} - first literal on json path in request content</li>
+ * <li>${xml:Envelope/Body/id} - first text on xml path in request content</li>
+ * </ul>
+ * Sequence $${ is written as ${. Placeholders without value (or with
+ * unparsable request content) are written as empty strings. Content values
+ * use same parsed documents as jsonContent() and xmlContent() conditions,
+ * so request content is parsed only once.
+ *
+ * @author antons
+ */
+class TemplateCompiler {
+
+    private final String encoding;
+    private final BodyDocuments documents;
+    private boolean body = false;
+
+    private TemplateCompiler(String encoding) {
+        this.encoding = encoding;
+        this.documents = BodyDocuments.instance(encoding);
+    }
+
+    public static TemplateContent compile(String template, String encoding) {
+        return new TemplateCompiler(encoding).compile(template);
+    }
+
+    private TemplateContent compile(String template) {
+        Charset charset = Charset.forName(encoding);
+        List<byte[]> literals = new ArrayList<>();
+        List<Function<HttpServletRequest, String>> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        int len = template.length();
+        while(pos < len) {
+            int start = template.indexOf("${", pos);
+            if(start < 0) {
+                literal.append(template, pos, len);
+                break;
+            }
+            if((start > 0) && (template.charAt(start - 1) == '$')) {
+                literal.append(template, pos, start - 1).append("${");
+                pos = start + 2;
+                continue;
+            }
+            int end = template.indexOf('}', start);
+            if(end < 0) throw new IllegalArgumentException("unclosed placeholder at " + start + " in template");
+            literal.append(template, pos, start);
+            literals.add(literal.toString().getBytes(charset));
+            literal.setLength(0);
+            slots.add(slot(template.substring(start + 2, end)));
+            pos = end + 1;
+        }
+        literals.add(literal.toString().getBytes(charset));
+        return TemplateContent.instance(literals, slots, encoding, body);
+    }
+
+    private Function<HttpServletRequest, String> slot(String placeholder) {
+        int pos = placeholder.indexOf(':');
+        if(pos < 0) throw new IllegalArgumentException("placeholder ${" + placeholder + "} has no source");
+        String source = placeholder.substring(0, pos).trim();
+        final String arg = placeholder.substring(pos + 1).trim();
+        if("path".equals(source)) {
+            final int index = Integer.parseInt(arg);
+            return RequestResolver.plain("pathSegment", RequestResolver.ATTRIBUTE, r -> segment(r.getRequestURI(), index), arg);
+        } else if("param".equals(source)) {
+            return RequestResolver.cached("param", RequestResolver.PARAM, r -> r.getParameter(arg), arg);
+        } else if("header".equals(source)) {
+            return RequestResolver.cached("header", RequestResolver.HEADER, r -> r.getHeader(arg), arg);
+        } else if("json".equals(source)) {
+            body = true;
+            final String[] path = path(arg);
+            return RequestResolver.cached("jsonSlot", RequestResolver.DOCUMENT, r -> { try { return documents.json(r).find(path).firstLiteral(); } catch (Exception e) { return null; }}, args(path));
+        } else if("xml".equals(source)) {
+            body = true;
+            final String[] path = path(arg);
+            return RequestResolver.cached("xmlSlot", RequestResolver.DOCUMENT, r -> { try { return documents.xml(r).find(path).firstText(); } catch (Exception e) { return null; }}, args(path));
+        }
+        throw new IllegalArgumentException("unknown placeholder source '" + source + "' in ${" + placeholder + "}");
+    }
+
+    // same arguments as jsonContent() and xmlContent() resolvers (different
+    // attribute, because conditions resolve failures as error messages)
+    private String[] args(String[] path) {
+        String[] rv = new String[path.length + 1];
+        rv[0] = encoding;
+        System.arraycopy(path, 0, rv, 1, path.length);
+        return rv;
+    }
+
+    private static String[] path(String value) {
+        List<String> list = new ArrayList<>();
+        for(String item : value.split("/")) {
+            if(!item.isEmpty()) list.add(item);
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    private static String segment(String uri, int index) {
+        if(uri == null) return null;
+        int current = 0;
+        int pos = 0;
+        int len = uri.length();
+        while(pos < len) {
+            if(uri.charAt(pos) == '/') {
+                pos++;
+                continue;
+            }
+            int end = uri.indexOf('/', pos);
+            if(end < 0) end = len;
+            if(current == index) return uri.substring(pos, end);
+            current++;
+            pos = end;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.Reader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming xml path extractor. It reads xml events directly from reader,
+ * follows only elements on given path and stops reading by first text
+ * of found element. No xml tree is created.
+ *
+ * Path starts with root element. Path items are matched with element local
+ * names, so namespace prefixes are ignored. Item can be also in form
+ * '{namespace}name' if namespace must match too ('{}name' matches only
+ * element without namespace). Item '*' matches any element. Last item
+ * in form '@name' (or '@{namespace}name') selects attribute of found element.
+ *
+ * @author antons
+ */
+class XmlPathReader {
+
+    private static final XMLInputFactory factory = factory();
+
+    private final String[] names;
+    private final String[] namespaces;
+    private final String attribute;
+    private final String attributeNamespace;
+
+    private XmlPathReader(String[] path) {
+        int len = (path == null) ? 0 : path.length;
+        boolean attr = (len > 0) && path[len - 1].startsWith("@");
+        if(attr) len--;
+        this.names = new String[len];
+        this.namespaces = new String[len];
+        for(int i = 0; i < len; i++) {
+            names[i] = name(path[i]);
+            namespaces[i] = namespace(path[i]);
+        }
+        this.attribute = attr ? name(path[len].substring(1)) : null;
+        this.attributeNamespace = attr ? namespace(path[len].substring(1)) : null;
+    }
+
+    private static String name(String item) {
+        int pos = item.startsWith("{") ? item.indexOf('}') : -1;
+        return (pos > 0) ? item.substring(pos + 1) : item;
+    }
+
+    private static String namespace(String item) {
+        int pos = item.startsWith("{") ? item.indexOf('}') : -1;
+        return (pos > 0) ? item.substring(1, pos) : null;
+    }
+
+    public static XmlPathReader instance(String... path) { return new XmlPathReader(path); }
+
+    /**
+     * Finds text of first element on path (or value of attribute if path
+     * ends with attribute).
+     * @param reader xml source
+     * @return text or null if element is not found or it has no text
+     */
+    public String firstText(Reader reader) throws XMLStreamException {
+        XMLStreamReader xml = factory.createXMLStreamReader(reader);
+        try {
+            int depth = 0; // number of matched path items
+            int skip = 0; // depth inside of not matched element
+            while(xml.hasNext()) {
+                int event = xml.next();
+                if(event == XMLStreamConstants.START_ELEMENT) {
+                    if(skip > 0) {
+                        skip++;
+                    } else if((depth < names.length) && matches(depth, xml)) {
+                        depth++;
+                        if(depth == names.length) {
+                            if(attribute == null) return text(xml);
+                            String value = attribute(xml);
+                            if(value != null) return value;
+                        }
+                    } else {
+                        skip = 1;
+                    }
+                } else if(event == XMLStreamConstants.END_ELEMENT) {
+                    if(skip > 0) skip--;
+                    else depth--;
+                }
+            }
+            return null;
+        } finally {
+            xml.close();
+        }
+    }
+
+    // first not empty text directly in current element
+    private static String text(XMLStreamReader xml) throws XMLStreamException {
+        int level = 0;
+        while(xml.hasNext()) {
+            int event = xml.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if(event == XMLStreamConstants.END_ELEMENT) {
+                if(level == 0) return null;
+                level--;
+            } else if((level == 0) && ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA))) {
+                if(!xml.isWhiteSpace()) return xml.getText();
+            }
+        }
+        return null;
+    }
+
+    private String attribute(XMLStreamReader xml) {
+        for(int i = 0; i < xml.getAttributeCount(); i++) {
+            if(!attribute.equals(xml.getAttributeLocalName(i))) continue;
+            if(same(attributeNamespace, xml.getAttributeNamespace(i))) return xml.getAttributeValue(i);
+        }
+        return null;
+    }
+
+    private boolean matches(int depth, XMLStreamReader xml) {
+        String name = names[depth];
+        if("*".equals(name)) return true;
+        if(!name.equals(xml.getLocalName())) return false;
+        return same(namespaces[depth], xml.getNamespaceURI());
+    }
+
+    // null expected namespace matches any, empty namespace is same as no namespace
+    private static boolean same(String expected, String namespace) {
+        if(expected == null) return true;
+        if(namespace == null) namespace = "";
+        return expected.equals(namespace);
+    }
+
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+}
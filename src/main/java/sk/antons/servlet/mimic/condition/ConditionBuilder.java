@@ -15,7 +15,12 @@
  */
 package sk.antons.servlet.mimic.condition;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Stack;
+import java.util.function.Function;
 
 /**
  *
@@ -35,35 +40,154 @@ public class ConditionBuilder<C> {
     public Condition<C> condition() {
         if(stack.size() != 1) throw new IllegalStateException("bad condition format at " + path);
         if(stack.peek().condition == null) throw new IllegalStateException("bad condition format at " + path);
-        return rebalance((Condition<C>)stack.peek().condition);
+        return compile((Condition<C>)stack.peek().condition);
     }
 
-    // mahke sure that combinations od and/or conditions will be evaluated from left to right
-    private static <X> Condition<X> rebalance(Condition<X> condition) {
-        if(condition == null) {
+    /**
+     * Compiles condition for evaluation. And/or chains are flattened to
+     * n-ary conditions, constants and double negations are folded and
+     * conditions with known cost (without side effects) are reordered so
+     * cheaper conditions are evaluated first. Conditions with unknown
+     * cost are evaluated in original order.
+     * @param condition condition to compile
+     * @return compiled condition with same result
+     */
+    public static <X> Condition<X> compile(Condition<X> condition) {
+        if(condition instanceof NotCondition) {
+            Condition<X> inner = compile(((NotCondition<X>)condition).right);
+            if(inner instanceof NotCondition) return ((NotCondition<X>)inner).right;
+            if(inner instanceof ConstCondition) return ConstCondition.instance(!((ConstCondition)inner).result);
+            return NotCondition.instance(inner);
+        } else if(condition instanceof AndCondition) {
+            List<Condition<X>> list = flatten(((AndCondition<X>)condition).conditions, true);
+            if(list.size() == 1) return list.get(0);
+            return AndCondition.instance(list);
+        } else if(condition instanceof OrCondition) {
+            List<Condition<X>> list = flatten(((OrCondition<X>)condition).conditions, false);
+            if(list.size() == 1) return list.get(0);
+            return OrCondition.instance(list);
+        } else {
             return condition;
-        } else if(condition instanceof NotCondition ) {
-            NotCondition<X> cnd = (NotCondition<X>)condition;
-            return NotCondition.instance(rebalance(cnd.right));
-        } else if(condition instanceof OrCondition ) {
-            OrCondition<X> cnd = (OrCondition<X>)condition;
-            if(cnd.left instanceof OrCondition) {
-                OrCondition<X> cndleft = (OrCondition<X>)cnd.left;
-                return rebalance(OrCondition.instance(cndleft.left, OrCondition.instance(cndleft.right, cnd.right)));
-            } else {
-                return OrCondition.instance(rebalance(cnd.left), rebalance(cnd.right));
+        }
+    }
+
+    /**
+     * Replaces leaf conditions (not and/or/not/named conditions) by mapper
+     * result. Composite conditions are recreated only if some leaf was replaced.
+     * @param condition condition to process
+     * @param mapper leaf replacement
+     * @return condition with replaced leafs
+     */
+    public static <X> Condition<X> replace(Condition<X> condition, Function<Condition<X>, Condition<X>> mapper) {
+        if(condition instanceof NotCondition) {
+            Condition<X> inner = ((NotCondition<X>)condition).right;
+            Condition<X> replaced = replace(inner, mapper);
+            return (replaced == inner) ? condition : NotCondition.instance(replaced);
+        } else if(condition instanceof NamedCondition) {
+            NamedCondition<X> named = (NamedCondition<X>)condition;
+            Condition<X> replaced = replace(named.condition, mapper);
+            return (replaced == named.condition) ? condition : NamedCondition.instance(replaced, named.name);
+        } else if(condition instanceof AndCondition) {
+            Condition<X>[] conditions = ((AndCondition<X>)condition).conditions;
+            Condition<X>[] replaced = replace(conditions, mapper);
+            return (replaced == conditions) ? condition : new AndCondition(replaced);
+        } else if(condition instanceof OrCondition) {
+            Condition<X>[] conditions = ((OrCondition<X>)condition).conditions;
+            Condition<X>[] replaced = replace(conditions, mapper);
+            return (replaced == conditions) ? condition : new OrCondition(replaced);
+        } else {
+            Condition<X> replaced = mapper.apply(condition);
+            return (replaced == null) ? condition : replaced;
+        }
+    }
+
+    private static <X> Condition<X>[] replace(Condition<X>[] conditions, Function<Condition<X>, Condition<X>> mapper) {
+        Condition<X>[] rv = conditions;
+        for(int i = 0; i < conditions.length; i++) {
+            Condition<X> replaced = replace(conditions[i], mapper);
+            if(replaced != conditions[i]) {
+                if(rv == conditions) rv = conditions.clone();
+                rv[i] = replaced;
             }
-        } else if(condition instanceof AndCondition ) {
-            AndCondition<X> cnd = (AndCondition<X>)condition;
-            if(cnd.left instanceof AndCondition) {
-                AndCondition<X> cndleft = (AndCondition<X>)cnd.left;
-                return rebalance(AndCondition.instance(cndleft.left, AndCondition.instance(cndleft.right, cnd.right)));
+        }
+        return rv;
+    }
+
+    // and (neutral=true) or or (neutral=false) operands
+    private static <X> List<Condition<X>> flatten(Condition<X>[] conditions, boolean neutral) {
+        List<Condition<X>> list = new ArrayList<>();
+        collect(conditions, neutral, list);
+        boolean pure = true;
+        for(int i = 0; i < list.size(); i++) {
+            Condition<X> condition = list.get(i);
+            if(condition instanceof ConstCondition) {
+                // result is decided here so rest is never evaluated
+                List<Condition<X>> rv = pure ? new ArrayList<>() : new ArrayList<>(list.subList(0, i));
+                rv.add(condition);
+                return rv;
+            }
+            if(cost(condition) < 0) pure = false;
+        }
+        if(list.isEmpty()) list.add(ConstCondition.instance(neutral));
+        reorder(list);
+        return list;
+    }
+
+    private static <X> void collect(Condition<X>[] conditions, boolean neutral, List<Condition<X>> list) {
+        for(Condition<X> condition : conditions) {
+            Condition<X> compiled = compile(condition);
+            if(neutral && (compiled instanceof AndCondition)) {
+                list.addAll(Arrays.asList(((AndCondition<X>)compiled).conditions));
+            } else if(!neutral && (compiled instanceof OrCondition)) {
+                list.addAll(Arrays.asList(((OrCondition<X>)compiled).conditions));
+            } else if((compiled instanceof ConstCondition) && (((ConstCondition)compiled).result == neutral)) {
+                // no effect on result
             } else {
-                return AndCondition.instance(rebalance(cnd.left), rebalance(cnd.right));
+                list.add(compiled);
             }
+        }
+    }
+
+    // stable sort of sequences of conditions without side effects
+    private static <X> void reorder(List<Condition<X>> list) {
+        int start = 0;
+        for(int i = 0; i <= list.size(); i++) {
+            if((i == list.size()) || (cost(list.get(i)) < 0)) {
+                if(i - start > 1) list.subList(start, i).sort(Comparator.comparingInt(c -> cost(c)));
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Evaluation cost of condition.
+     * @param condition
+     * @return cost or -1 if it is not known (condition can have side effects)
+     */
+    public static int cost(Condition<?> condition) {
+        if(condition instanceof ConstCondition) {
+            return 0;
+        } else if(condition instanceof StringCondition) {
+            return ((StringCondition)condition).cost();
+        } else if(condition instanceof NotCondition) {
+            return cost(((NotCondition)condition).right);
+        } else if(condition instanceof AndCondition) {
+            return cost(((AndCondition<?>)condition).conditions);
+        } else if(condition instanceof OrCondition) {
+            return cost(((OrCondition<?>)condition).conditions);
         } else {
-            return condition;
+            return -1;
+        }
+    }
+
+    private static int cost(Condition<?>[] conditions) {
+        int sum = 0;
+        for(Condition<?> condition : conditions) {
+            int cost = cost(condition);
+            if(cost < 0) return -1;
+            sum = sum + cost;
         }
+        return sum;
     }
 
     public ConditionBuilder<C> add(Condition<C> condition) {
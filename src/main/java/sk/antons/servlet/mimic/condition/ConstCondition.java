@@ -28,6 +28,7 @@ public class ConstCondition<T> implements Condition<T> {
     }
 
     public static <W> ConstCondition<W> instance(boolean result) { return new ConstCondition(result); }
+    public boolean result() { return result; }
 
     @Override
     public boolean check(T request) {
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.condition;
+
+/**
+ * Value resolver with known evaluation cost. Such resolver must have no
+ * side effects, so conditions using it can be evaluated in any order.
+ * @author antons
+ */
+public interface Costed {
+
+    /**
+     * Cost of evaluation. Cheap attributes like method or path should
+     * be close to 1, reading of content much more.
+     * @return evaluation cost
+     */
+    int cost();
+
+}
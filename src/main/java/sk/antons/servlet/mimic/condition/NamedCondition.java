@@ -30,6 +30,8 @@ public class NamedCondition<T> implements Condition<T> {
     }
 
     public static <W> NamedCondition<W> instance(Condition<W> condition, String name) { return new NamedCondition(condition, name); }
+    public Condition<T> condition() { return condition; }
+    public String name() { return name; }
 
     @Override
     public boolean check(T request) {
@@ -28,6 +28,7 @@ public class NotCondition<T> implements Condition<T> {
     }
 
     public static <W> NotCondition<W> instance(Condition<W> right) { return new NotCondition(right); }
+    public Condition<T> condition() { return right; }
 
     @Override
     public boolean check(T request) {
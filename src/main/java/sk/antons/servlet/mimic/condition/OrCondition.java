@@ -15,29 +15,48 @@
  */
 package sk.antons.servlet.mimic.condition;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  *
  * @author antons
  */
 public class OrCondition<T> implements Condition<T> {
 
-    Condition<T> left;
-    Condition<T> right;
+    Condition<T>[] conditions;
 
     public OrCondition(Condition<T> left, Condition<T> right) {
-        this.left = left;
-        this.right = right;
+        this(new Condition[] {left, right});
+    }
+
+    public OrCondition(Condition<T>[] conditions) {
+        this.conditions = conditions;
     }
 
     public static <W> OrCondition<W> instance(Condition<W> left, Condition<W> right) { return new OrCondition(left, right); }
+    public static <W> OrCondition<W> instance(List<Condition<W>> conditions) { return new OrCondition(conditions.toArray(new Condition[conditions.size()])); }
+    public List<Condition<T>> conditions() { return Collections.unmodifiableList(Arrays.asList(conditions)); }
 
     @Override
     public boolean check(T request) {
-        return left.check(request) || right.check(request);
+        for(Condition<T> condition : conditions) {
+            if(condition.check(request)) return true;
+        }
+        return false;
     }
 
     @Override
     public String toString() {
-        return "( " + left + " OR " + right + " )";
+        StringBuilder sb = new StringBuilder();
+        sb.append("(");
+        for(int i = 0; i < conditions.length; i++) {
+            if(i > 0) sb.append(" OR");
+            sb.append(' ').append(conditions[i]);
+        }
+        sb.append(" )");
+        return sb.toString();
     }
+
 }
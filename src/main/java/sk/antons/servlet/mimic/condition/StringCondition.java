@@ -20,55 +20,151 @@ import java.util.regex.Pattern;
 import sk.antons.web.path.PathMatcher;
 
 /**
- *
+ * Condition comparing resolved string value with parameter. Instances
+ * created by instance() are specialized subclasses per operation, so
+ * check() of each of them does only one string operation without
+ * dispatching on operation.
  * @author antons
  */
 public class StringCondition<T> implements Condition<T> {
 
-    Function<T, String> resolver;
-    String param;
-    Operation operation;
-    String name;
+    final Function<T, String> resolver;
+    final String param;
+    final Operation operation;
+    final String name;
+    // matchers are compiled here, so condition is immutable and can be shared by threads
+    final PathMatcher pathMatcher;
+    final Pattern pattern;
 
     public StringCondition(Operation operation, String param, Function<T, String> resolver, String name) {
         this.operation = operation;
         this.param = param;
         this.resolver = resolver;
         this.name = name;
+        this.pathMatcher = (operation == Operation.MATCH) ? PathMatcher.instance(param) : null;
+        this.pattern = (operation == Operation.REGEXP) ? Pattern.compile(param) : null;
     }
 
-    public static <W> StringCondition<W> instance(Operation operation, String param, Function<W, String> resolver) { return new StringCondition(operation, param, resolver, "?"); }
-    public static <W> StringCondition<W> instance(Operation operation, String param, Function<W, String> resolver, String name) { return new StringCondition(operation, param, resolver, name); }
+    public static <W> StringCondition<W> instance(Operation operation, String param, Function<W, String> resolver) { return instance(operation, param, resolver, "?"); }
+    public static <W> StringCondition<W> instance(Operation operation, String param, Function<W, String> resolver, String name) {
+        if(operation == null) return new StringCondition(operation, param, resolver, name);
+        switch(operation) {
+            case EXISTS: return new Exists(param, resolver, name);
+            case EQUALS: return new Equals(param, resolver, name);
+            case EQUALS_IGNORE_CASE: return new EqualsIgnoreCase(param, resolver, name);
+            case STARTS_WITH: return new StartsWith(param, resolver, name);
+            case ENDS_WITH: return new EndsWith(param, resolver, name);
+            case CONTAINS: return new Contains(param, resolver, name);
+            case MATCH: return new Match(param, resolver, name);
+            case REGEXP: return new Regexp(param, resolver, name);
+            default: return new StringCondition(operation, param, resolver, name);
+        }
+    }
+    public Function<T, String> resolver() { return resolver; }
+    public String param() { return param; }
+    public Operation operation() { return operation; }
+    public String name() { return name; }
+    /**
+     * Cost of evaluation if resolver cost is known.
+     * @return cost or -1 if it is unknown
+     */
+    public int cost() {
+        if(!(resolver instanceof Costed)) return -1;
+        int cost = ((Costed)resolver).cost();
+        if((operation == Operation.MATCH) || (operation == Operation.REGEXP)) cost++;
+        return cost;
+    }
 
+    /**
+     * Generic check used by directly constructed conditions. Subclasses
+     * override it by one operation.
+     */
     @Override
     public boolean check(T request) {
         String value = resolver.apply(request);
-        return check(value);
+        if((value == null) || (operation == null)) return false;
+        switch(operation) {
+            case EXISTS: return value.length() != 0;
+            case EQUALS: return value.equals(param);
+            case EQUALS_IGNORE_CASE: return value.equalsIgnoreCase(param);
+            case STARTS_WITH: return value.startsWith(param);
+            case ENDS_WITH: return value.endsWith(param);
+            case CONTAINS: return value.contains(param);
+            case MATCH: return pathMatcher.match(value);
+            case REGEXP: return pattern.matcher(value).matches();
+            default: return false;
+        }
     }
 
-    private PathMatcher pathMatcher = null;
-    private Pattern regexpPattern = null;
-    private boolean check(String value) {
-        if(operation == Operation.EXISTS) {
+    private static final class Exists<T> extends StringCondition<T> {
+        private Exists(String param, Function<T, String> resolver, String name) { super(Operation.EXISTS, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
             return (value != null) && (value.length() != 0);
-        } else if(operation == Operation.EQUALS) {
-            return (value != null) && (value.equals(param));
-        } else if(operation == Operation.EQUALS_IGNORE_CASE) {
-            return (value != null) && (value.equalsIgnoreCase(param));
-        } else if(operation == Operation.STARTS_WITH) {
-            return (value != null) && (value.startsWith(param));
-        } else if(operation == Operation.ENDS_WITH) {
-            return (value != null) && (value.endsWith(param));
-        } else if(operation == Operation.CONTAINS) {
-            return (value != null) && (value.contains(param));
-        } else if(operation == Operation.MATCH) {
-            if(pathMatcher == null) pathMatcher = PathMatcher.instance(param);
+        }
+    }
+
+    private static final class Equals<T> extends StringCondition<T> {
+        private Equals(String param, Function<T, String> resolver, String name) { super(Operation.EQUALS, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && value.equals(param);
+        }
+    }
+
+    private static final class EqualsIgnoreCase<T> extends StringCondition<T> {
+        private EqualsIgnoreCase(String param, Function<T, String> resolver, String name) { super(Operation.EQUALS_IGNORE_CASE, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && value.equalsIgnoreCase(param);
+        }
+    }
+
+    private static final class StartsWith<T> extends StringCondition<T> {
+        private StartsWith(String param, Function<T, String> resolver, String name) { super(Operation.STARTS_WITH, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && value.startsWith(param);
+        }
+    }
+
+    private static final class EndsWith<T> extends StringCondition<T> {
+        private EndsWith(String param, Function<T, String> resolver, String name) { super(Operation.ENDS_WITH, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && value.endsWith(param);
+        }
+    }
+
+    private static final class Contains<T> extends StringCondition<T> {
+        private Contains(String param, Function<T, String> resolver, String name) { super(Operation.CONTAINS, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && value.contains(param);
+        }
+    }
+
+    private static final class Match<T> extends StringCondition<T> {
+        private Match(String param, Function<T, String> resolver, String name) { super(Operation.MATCH, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
             return (value != null) && pathMatcher.match(value);
-        } else if(operation == Operation.REGEXP) {
-            if(regexpPattern == null) regexpPattern = Pattern.compile(param);
-            return (value != null) && regexpPattern.matcher(value).matches();
-        } else {
-            return false;
+        }
+    }
+
+    private static final class Regexp<T> extends StringCondition<T> {
+        private Regexp(String param, Function<T, String> resolver, String name) { super(Operation.REGEXP, param, resolver, name); }
+        @Override
+        public boolean check(T request) {
+            String value = resolver.apply(request);
+            return (value != null) && pattern.matcher(value).matches();
         }
     }
 
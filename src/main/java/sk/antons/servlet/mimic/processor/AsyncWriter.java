@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non blocking response writer. Request is switched to async mode and
+ * content is written by chunks only when output stream is ready, so no
+ * container thread waits for slow client. If bandwidth is limited, writing
+ * is paused by shared scheduler whenever it is ahead of allowed rate.
+ * @author antons
+ */
+class AsyncWriter implements WriteListener {
+
+    private final AsyncContext context;
+    private final ServletOutputStream os;
+    private final Segment[] segments;
+    private final long bandwidth;
+    private final int chunk;
+    private int index = 0;
+    private long position;
+    private long remaining;
+    private long start = 0;
+    private long written = 0;
+
+    private AsyncWriter(AsyncContext context, ServletOutputStream os, long bandwidth, Segment[] segments) {
+        this.context = context;
+        this.os = os;
+        this.segments = segments;
+        this.bandwidth = bandwidth;
+        this.chunk = (bandwidth > 0) ? (int)Math.max(1, Math.min(BufferPool.SIZE, bandwidth / 10)) : BufferPool.SIZE;
+        if(segments.length > 0) {
+            this.position = segments[0].position;
+            this.remaining = segments[0].count;
+        }
+    }
+
+    /**
+     * Starts async writing of content segments. Response headers must be
+     * already set.
+     * @param request request
+     * @param response response
+     * @param bandwidth max bytes per second (0 means unlimited)
+     * @param segments parts of rangeable contents
+     * @throws IOException
+     */
+    public static void start(HttpServletRequest request, HttpServletResponse response, long bandwidth, Segment... segments) throws IOException {
+        AsyncContext context = request.isAsyncStarted() ? request.getAsyncContext() : request.startAsync();
+        context.setTimeout(0);
+        ServletOutputStream os = response.getOutputStream();
+        os.setWriteListener(new AsyncWriter(context, os, bandwidth, segments));
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        if(start == 0) start = System.nanoTime();
+        while(os.isReady()) {
+            if(bandwidth > 0) {
+                long ahead = start + due(written, bandwidth) - System.nanoTime();
+                if(ahead > 0) {
+                    // stream is ready, so container doesn't call listener again
+                    Scheduler.schedule(() -> context.start(this::resume), ahead, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            while((remaining == 0) && (index < segments.length)) {
+                index++;
+                if(index < segments.length) {
+                    position = segments[index].position;
+                    remaining = segments[index].count;
+                }
+            }
+            if(index >= segments.length) {
+                context.complete();
+                return;
+            }
+            long count = Math.min(chunk, remaining);
+            segments[index].content.write(os, position, count);
+            position = position + count;
+            remaining = remaining - count;
+            written = written + count;
+        }
+    }
+
+    /**
+     * Time in nanoseconds since start of writing, when given number of bytes
+     * may be written. Computed without overflow of written * 10^9.
+     */
+    static long due(long written, long bandwidth) {
+        return written / bandwidth * 1000000000L + written % bandwidth * 1000000000L / bandwidth;
+    }
+
+    private void resume() {
+        try {
+            onWritePossible();
+        } catch(Exception e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        context.complete();
+    }
+
+    /**
+     * Part of rangeable content.
+     */
+    static class Segment {
+        private final Content content;
+        private final long position;
+        private final long count;
+
+        Segment(Content content, long position, long count) {
+            this.content = content;
+            this.position = position;
+            this.count = count;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of transfer buffers shared by content writers. Buffers are reused
+ * so copying of large contents doesn't produce garbage.
+ * @author antons
+ */
+class BufferPool {
+
+    /** buffer size */
+    public static final int SIZE = 16 * 1024;
+    /** max number of pooled buffers */
+    private static final int MAX = 256;
+
+    private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger count = new AtomicInteger();
+
+    public static byte[] take() {
+        byte[] buffer = buffers.poll();
+        if(buffer == null) return new byte[SIZE];
+        count.decrementAndGet();
+        return buffer;
+    }
+
+    public static void release(byte[] buffer) {
+        if((buffer == null) || (buffer.length != SIZE)) return;
+        if(count.incrementAndGet() > MAX) {
+            count.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Static content encoded to bytes once. It is written by one write call.
+ * @author antons
+ */
+public class ByteContent implements Content {
+
+    private final byte[] data;
+    private final long created = System.currentTimeMillis();
+    private volatile String etag = null;
+
+    public ByteContent(byte[] data) {
+        this.data = (data == null) ? new byte[0] : data;
+    }
+
+    public static ByteContent instance(byte[] data) { return new ByteContent(data); }
+
+    public byte[] data() { return data; }
+
+    @Override
+    public long length() {
+        return data.length;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        os.write(data);
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        os.write(data, (int)position, (int)count);
+    }
+
+    @Override
+    public Content encoded(String encoding) {
+        byte[] encoded = Compression.encode(encoding, data);
+        return (encoded.length < data.length) ? new ByteContent(encoded) : null;
+    }
+
+    @Override
+    public String etag() {
+        if(etag == null) etag = Validators.etag(data);
+        return etag;
+    }
+
+    @Override
+    public long lastModified() {
+        return created;
+    }
+
+}
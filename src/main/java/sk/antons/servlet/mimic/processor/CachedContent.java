@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Content of resource stored in content cache. Resource is read only if
+ * it is not cached or if its file was changed.
+ *
+ * Content is resolved once per request to one cache entry, so length,
+ * validators and (partial) writes of one response use same data and
+ * cache is not looked up again. File bigger than cache budget is not
+ * read to memory, it is streamed from file.
+ * @author antons
+ */
+public class CachedContent implements Content, Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ContentCache cache;
+    private final String key;
+    private final File file;
+    private final Supplier<InputStream> loader;
+    private final CachedContent original;
+    private FileContent stream = null;
+
+    private CachedContent(ContentCache cache, String key, File file, Supplier<InputStream> loader, CachedContent original) {
+        this.cache = cache;
+        this.key = key;
+        this.file = file;
+        this.loader = loader;
+        this.original = original;
+    }
+
+    public CachedContent(ContentCache cache, String key, File file, Supplier<InputStream> loader) {
+        this(cache, key, file, loader, null);
+    }
+
+    /**
+     * Cached content.
+     * @param cache content cache
+     * @param key resource identification
+     * @param file file with resource or null if resource is not file (used for invalidation)
+     * @param loader resource reader
+     * @return content
+     */
+    public static CachedContent instance(ContentCache cache, String key, File file, Supplier<InputStream> loader) { return new CachedContent(cache, key, file, loader); }
+
+    public byte[] data() { return cache.get(key, file, loader); }
+
+    /**
+     * Content of current cache entry. Encoded variant resolves to null if
+     * content is not encoded (content is streamed from file or encoding
+     * does not reduce its size).
+     */
+    @Override
+    public Content resolve(HttpServletRequest request) {
+        ContentCache.Entry entry = cache.entry(key, file, loader);
+        if(entry == null) return (original == null) ? stream().resolve(request) : null;
+        if((original != null) && (entry.data().length == 0)) return null;
+        return new Snapshot(entry);
+    }
+
+    @Override
+    public long length() {
+        return resolved().length();
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        resolved().write(os);
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        resolved().write(os, position, count);
+    }
+
+    @Override
+    public String etag() {
+        return resolved().etag();
+    }
+
+    @Override
+    public long lastModified() {
+        return resolved().lastModified();
+    }
+
+    /**
+     * Encoded content is stored in same cache and it is invalidated
+     * together with original resource. Sizes are compared when entry is
+     * loaded and encoded content which is not smaller is stored as empty
+     * entry, so identity content is used for it.
+     */
+    @Override
+    public Content encoded(String encoding) {
+        return new CachedContent(cache, encoding + ":" + key, file, () -> {
+            byte[] data = data();
+            byte[] encoded = Compression.encode(encoding, data);
+            return new ByteArrayInputStream((encoded.length < data.length) ? encoded : EMPTY);
+        }, this);
+    }
+
+    /**
+     * Closes file used for streaming of big file.
+     */
+    @Override
+    public synchronized void close() {
+        if(stream != null) stream.close();
+    }
+
+    private Content resolved() {
+        Content rv = resolve(null);
+        if(rv == null) throw new IllegalStateException("content " + key + " is not encoded");
+        return rv;
+    }
+
+    private synchronized FileContent stream() {
+        if(stream == null) stream = FileContent.instance(file);
+        return stream;
+    }
+
+    /**
+     * Content of one cache entry.
+     */
+    private static class Snapshot implements Content {
+        private final ContentCache.Entry entry;
+
+        private Snapshot(ContentCache.Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public long length() {
+            return entry.data().length;
+        }
+
+        @Override
+        public void write(OutputStream os) throws IOException {
+            os.write(entry.data());
+        }
+
+        @Override
+        public boolean isRangeable() {
+            return true;
+        }
+
+        @Override
+        public void write(OutputStream os, long position, long count) throws IOException {
+            os.write(entry.data(), (int)position, (int)count);
+        }
+
+        @Override
+        public String etag() {
+            return entry.etag();
+        }
+
+        @Override
+        public long lastModified() {
+            return entry.lastModified();
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings supported for precompressed content and
+ * Accept-Encoding negotiation.
+ * @author antons
+ */
+public class Compression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Checks if encoding is supported.
+     * @param encoding content coding name
+     * @return true if data can be encoded
+     */
+    public static boolean isSupported(String encoding) {
+        return GZIP.equals(encoding) || DEFLATE.equals(encoding);
+    }
+
+    /**
+     * Encodes data.
+     * @param encoding content coding (gzip or deflate)
+     * @param data data to be encoded
+     * @return encoded data
+     */
+    public static byte[] encode(String encoding, byte[] data) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+            OutputStream os;
+            if(GZIP.equals(encoding)) os = new GZIPOutputStream(bos);
+            else if(DEFLATE.equals(encoding)) os = new DeflaterOutputStream(bos);
+            else throw new IllegalArgumentException("unsupported content encoding " + encoding);
+            os.write(data);
+            os.close();
+            return bos.toByteArray();
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Selects first encoding accepted by Accept-Encoding header.
+     * @param accept Accept-Encoding header value
+     * @param encodings available encodings in preferred order
+     * @return index of selected encoding or -1 if no encoding is acceptable
+     */
+    public static int negotiate(String accept, String[] encodings) {
+        if((accept == null) || (encodings.length == 0)) return -1;
+        boolean[] accepted = new boolean[encodings.length];
+        boolean[] refused = new boolean[encodings.length];
+        boolean any = false;
+        int start = 0;
+        int len = accept.length();
+        while(start < len) {
+            int end = accept.indexOf(',', start);
+            if(end < 0) end = len;
+            int semicolon = accept.indexOf(';', start);
+            int nameend = ((semicolon < 0) || (semicolon > end)) ? end : semicolon;
+            String name = accept.substring(start, nameend).trim();
+            boolean zero = (nameend < end) && isZero(accept.substring(nameend + 1, end));
+            if("*".equals(name)) {
+                any = !zero;
+            } else {
+                for(int i = 0; i < encodings.length; i++) {
+                    if(encodings[i].equalsIgnoreCase(name)) {
+                        if(zero) refused[i] = true;
+                        else accepted[i] = true;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        for(int i = 0; i < encodings.length; i++) {
+            if(refused[i]) continue;
+            if(accepted[i] || any) return i;
+        }
+        return -1;
+    }
+
+    // parameter q=0 (or 0.0, 0.00 ...)
+    private static boolean isZero(String params) {
+        for(String param : params.split(";")) {
+            param = param.trim();
+            if(!(param.startsWith("q=") || param.startsWith("Q="))) continue;
+            String value = param.substring(2).trim();
+            if(value.isEmpty() || (value.charAt(0) != '0')) return false;
+            for(int i = 1; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if((c != '.') && (c != '0')) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+}
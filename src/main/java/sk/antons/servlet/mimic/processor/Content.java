@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response content.
+ * @author antons
+ */
+public interface Content {
+
+    /**
+     * Content length.
+     * @return length in bytes or -1 if it is not known
+     */
+    long length();
+
+    /**
+     * Writes whole content to output stream.
+     * @param os target stream
+     * @throws IOException
+     */
+    void write(OutputStream os) throws IOException;
+
+    /**
+     * Writes whole content as response body. Implementation can use container
+     * specific way of transfer. Default implementation writes to response
+     * output stream.
+     * @param request request
+     * @param response response
+     * @throws IOException
+     */
+    default void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(response.getOutputStream());
+    }
+
+    /**
+     * Content for given request. Static contents return itself and
+     * request dependent contents (like templates) return resolved content.
+     * @param request request
+     * @return content to be written
+     */
+    default Content resolve(HttpServletRequest request) {
+        return this;
+    }
+
+    /**
+     * Checks if resolving of content reads request content.
+     * @return true if request content is used
+     */
+    default boolean usesRequestBody() {
+        return false;
+    }
+
+    /**
+     * Checks if content supports partial writes.
+     * @return true if content part can be written without reading previous bytes
+     */
+    default boolean isRangeable() {
+        return false;
+    }
+
+    /**
+     * Writes part of content.
+     * @param os output stream
+     * @param position first byte position
+     * @param count number of bytes
+     * @throws IOException
+     */
+    default void write(OutputStream os, long position, long count) throws IOException {
+        throw new UnsupportedOperationException("partial write is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Writes part of content as response body. Implementation can use container
+     * specific way of transfer.
+     * @param request request
+     * @param response response
+     * @param position first byte position
+     * @param count number of bytes
+     * @throws IOException
+     */
+    default void write(HttpServletRequest request, HttpServletResponse response, long position, long count) throws IOException {
+        write(response.getOutputStream(), position, count);
+    }
+
+    /**
+     * Checks if content is transfered by container itself (like tomcat
+     * sendfile) so it need not be written by application.
+     * @param request request
+     * @return true if container transfers content
+     */
+    default boolean isContainerTransfer(HttpServletRequest request) {
+        return false;
+    }
+
+    /**
+     * Same content encoded by content coding (like gzip). Encoded content
+     * is prepared once, not by each request. If size of content is known
+     * only when content is loaded, encoded content resolves to null
+     * when encoding does not reduce size (identity content is used then).
+     * @param encoding content coding
+     * @return encoded content or null if content can't be precompressed
+     */
+    default Content encoded(String encoding) {
+        return null;
+    }
+
+    /**
+     * Entity tag of content.
+     * @return quoted entity tag or null if content is not static
+     */
+    default String etag() {
+        return null;
+    }
+
+    /**
+     * Last modification time of content.
+     * @return time in millis or -1 if content is not static
+     */
+    default long lastModified() {
+        return -1;
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import sk.antons.jaul.binary.Bytes;
+
+/**
+ * Memory cache of resource contents shared by processors. Cache has memory
+ * budget in bytes. Least recently used contents are evicted if budget is
+ * exceeded and contents larger than budget are not stored at all (files
+ * larger than budget are not even read, they should be streamed from file).
+ *
+ * Contents read from files are invalidated if file size or modification
+ * time is changed. Missing content is loaded once, concurrent requests
+ * for same key wait for that load.
+ *
+ * @author antons
+ */
+public class ContentCache {
+
+    /** default memory budget (64MB) */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private static final ContentCache shared = new ContentCache(DEFAULT_BUDGET);
+
+    private final long budget;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, FutureTask<Entry>> loading = new ConcurrentHashMap<>();
+    private long size = 0;
+
+    private ContentCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * New cache with given budget.
+     * @param budget max number of cached bytes
+     * @return cache
+     */
+    public static ContentCache instance(long budget) { return new ContentCache(budget); }
+    /**
+     * Cache shared by processors without own cache.
+     * @return shared cache
+     */
+    public static ContentCache shared() { return shared; }
+
+    public long budget() { return budget; }
+    public synchronized long size() { return size; }
+    public synchronized int count() { return entries.size(); }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Cached content of resource. Content is loaded if it is not
+     * cached or if file was changed. (file bigger than budget is read
+     * and it is not stored)
+     * @param key resource identification
+     * @param file file with resource or null if resource is not file
+     * @param loader resource reader
+     * @return resource content
+     */
+    public byte[] get(String key, File file, Supplier<InputStream> loader) {
+        Entry entry = entry(key, file, loader);
+        return (entry == null) ? read(loader, -1, -1).data : entry.data;
+    }
+
+    /**
+     * Cached content of resource with its validators. It should be resolved
+     * once per request and used for all parts of response, so content
+     * is not looked up (and file is not checked) repeatedly.
+     * @param key resource identification
+     * @param file file with resource or null if resource is not file
+     * @param loader resource reader
+     * @return entry or null if file is bigger than budget
+     */
+    public Entry entry(String key, File file, Supplier<InputStream> loader) {
+        long length = (file == null) ? -1 : file.length();
+        long modified = (file == null) ? -1 : file.lastModified();
+        if(length > budget) return null;
+        Entry entry = cached(key, length, modified);
+        if(entry != null) return entry;
+
+        FutureTask<Entry> task = new FutureTask<>(() -> {
+            // content can be loaded by previous task already
+            Entry rv = cached(key, length, modified);
+            if(rv == null) rv = store(key, read(loader, length, modified));
+            return rv;
+        });
+        FutureTask<Entry> running = loading.putIfAbsent(key, task);
+        if(running == null) {
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+            running = task;
+        }
+        try {
+            return running.get();
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IllegalStateException(cause);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized Entry cached(String key, long length, long modified) {
+        Entry entry = entries.get(key);
+        if(entry == null) return null;
+        if((entry.length == length) && (entry.modified == modified)) return entry;
+        remove(key);
+        return null;
+    }
+
+    private synchronized Entry store(String key, Entry entry) {
+        if(entry.data.length <= budget) {
+            remove(key);
+            entries.put(key, entry);
+            size = size + entry.data.length;
+            evict();
+        }
+        return entry;
+    }
+
+    private static Entry read(Supplier<InputStream> loader, long length, long modified) {
+        try(InputStream is = loader.get()) {
+            return new Entry(Bytes.fromStream(is), length, modified);
+        } catch(RuntimeException e) {
+            throw e;
+        } catch(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if(entry != null) size = size - entry.data.length;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while((size > budget) && iter.hasNext()) {
+            size = size - iter.next().getValue().data.length;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Loaded content. Instance is immutable (etag is computed once by first use).
+     */
+    public static class Entry {
+        private final byte[] data;
+        private final long length;
+        private final long modified;
+        private final long loaded = System.currentTimeMillis();
+        private volatile String etag = null;
+
+        private Entry(byte[] data, long length, long modified) {
+            this.data = data;
+            this.length = length;
+            this.modified = modified;
+        }
+
+        public byte[] data() { return data; }
+
+        /**
+         * Entity tag of content.
+         * @return quoted entity tag
+         */
+        public String etag() {
+            String rv = etag;
+            if(rv == null) {
+                rv = Validators.etag(data);
+                etag = rv;
+            }
+            return rv;
+        }
+
+        /**
+         * Modification time of content. (file modification time or load time)
+         * @return time in millis
+         */
+        public long lastModified() { return (modified > 0) ? modified : loaded; }
+    }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Processor writing configured status, headers and content. Instance is
+ * immutable, all values are prepared by ProcessorBuilder.build().
+ * @author antons
+ */
+public class ContentProcessor implements BiPredicate<HttpServletRequest, HttpServletResponse>, Closeable {
+
+    private final String name;
+    private final int status;
+    private final long length;
+    private final String contentType;
+    private final String[] headerNames;
+    private final String[] headerValues;
+    private final Content content;
+    private final String[] encodings;
+    private final Content[] variants;
+    private final boolean conditional;
+    private final boolean ranges;
+    private final boolean async;
+    private final Latency delay;
+    private final long bandwidth;
+
+    private ContentProcessor(String name, int status, long length, String contentType, String[] headerNames, String[] headerValues, Content content, String[] encodings, Content[] variants, boolean conditional, boolean ranges, boolean async, Latency delay, long bandwidth) {
+        this.name = name;
+        this.status = status;
+        this.length = length;
+        this.contentType = contentType;
+        this.headerNames = headerNames;
+        this.headerValues = headerValues;
+        this.content = content;
+        this.encodings = encodings;
+        this.variants = variants;
+        this.conditional = conditional;
+        this.ranges = ranges;
+        this.async = async;
+        this.delay = delay;
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Creates processor.
+     * @param name configuration name
+     * @param status response status
+     * @param length response content length (negative value means length of content)
+     * @param contentType response content type (content is written only if it is defined)
+     * @param headers response headers as name value pairs
+     * @param content response content
+     * @return processor
+     */
+    public static ContentProcessor instance(String name, int status, long length, String contentType, List<String[]> headers, Content content) {
+        return instance(name, status, length, contentType, headers, content, null, false, false, false, null, 0);
+    }
+
+    /**
+     * Creates processor with encoded variants of content. Variant is selected
+     * by Accept-Encoding request header.
+     * @param name configuration name
+     * @param status response status
+     * @param length response content length (negative value means length of content)
+     * @param contentType response content type (content is written only if it is defined)
+     * @param headers response headers as name value pairs
+     * @param content response content
+     * @param variants encoded contents by content coding in preferred order
+     * @param conditional if true ETag and Last-Modified of static content are sent
+     *    and conditional requests are answered by 304
+     * @param ranges if true Range requests are answered by partial content
+     * @param async if true rangeable content is written by non blocking writer
+     * @param delay response delay (can be null)
+     * @param bandwidth max bytes per second of rangeable content (0 means unlimited)
+     * @return processor
+     */
+    public static ContentProcessor instance(String name, int status, long length, String contentType, List<String[]> headers, Content content, Map<String, Content> variants, boolean conditional, boolean ranges, boolean async, Latency delay, long bandwidth) {
+        String[] encodings = new String[variants == null ? 0 : variants.size()];
+        Content[] contents = new Content[encodings.length];
+        if(variants != null) {
+            int i = 0;
+            for(Map.Entry<String, Content> entry : variants.entrySet()) {
+                encodings[i] = entry.getKey();
+                contents[i] = entry.getValue();
+                i++;
+            }
+        }
+        String[] names = new String[headers.size()];
+        String[] values = new String[headers.size()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = headers.get(i)[0];
+            values[i] = headers.get(i)[1];
+        }
+        return new ContentProcessor(name, status, length, contentType, names, values, content, encodings, contents, conditional, ranges, async, delay, bandwidth);
+    }
+
+    public Content content() { return content; }
+    public String name() { return name; }
+    public int status() { return status; }
+    public long length() { return length; }
+    public String contentType() { return contentType; }
+    public boolean isConditional() { return conditional; }
+    public boolean isRanges() { return ranges; }
+    public boolean isAsync() { return async; }
+    public Latency delay() { return delay; }
+    public long bandwidth() { return bandwidth; }
+    /**
+     * Response headers as name value pairs.
+     * @return headers
+     */
+    public List<String[]> headers() {
+        List<String[]> list = new ArrayList<>();
+        for(int i = 0; i < headerNames.length; i++) {
+            list.add(new String[] {headerNames[i], headerValues[i]});
+        }
+        return list;
+    }
+    /**
+     * Encoded variants of content by content coding.
+     * @return variants in preferred order
+     */
+    public Map<String, Content> variants() {
+        Map<String, Content> map = new LinkedHashMap<>();
+        for(int i = 0; i < encodings.length; i++) {
+            map.put(encodings[i], variants[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Closes content and variants which hold open files. Running writes
+     * finish, files are closed after them.
+     */
+    @Override
+    public void close() throws IOException {
+        close(content);
+        for(Content variant : variants) close(variant);
+    }
+
+    private static void close(Content content) throws IOException {
+        if(content instanceof Closeable) ((Closeable)content).close();
+    }
+
+    /**
+     * Checks if processor reads request content.
+     * @return true if request content is used
+     */
+    public boolean usesRequestBody() { return (content != null) && content.usesRequestBody(); }
+
+    /**
+     * Writes response. If delay is defined and container supports async
+     * processing, request thread is released and response is written
+     * after delay by container thread.
+     */
+    @Override
+    public boolean test(HttpServletRequest req, HttpServletResponse res) {
+        long millis = (delay == null) ? 0 : delay.next();
+        if(millis <= 0) {
+            respond(req, res);
+        } else if(req.isAsyncSupported()) {
+            AsyncContext context = req.isAsyncStarted() ? req.getAsyncContext() : req.startAsync();
+            context.setTimeout(0);
+            Scheduler.schedule(() -> context.start(() -> {
+                boolean pending = false;
+                try {
+                    pending = respond(req, res);
+                } catch(Exception e) {
+                    if(!res.isCommitted()) res.setStatus(500);
+                } finally {
+                    if(!pending) context.complete();
+                }
+            }), millis, TimeUnit.MILLISECONDS);
+        } else {
+            try {
+                Thread.sleep(millis);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(req, res);
+        }
+        return true;
+    }
+
+    // returns true if response is written by async writer
+    private boolean respond(HttpServletRequest req, HttpServletResponse res) {
+        Content body = (content == null) ? null : content.resolve(req);
+        long len = ((length < 0) && (body != null)) ? body.length() : length;
+        if(encodings.length > 0) {
+            res.addHeader("Vary", "Accept-Encoding");
+            int index = Compression.negotiate(req.getHeader("Accept-Encoding"), encodings);
+            // variant is resolved for request too (it is null if content is not encoded)
+            Content encoded = (index >= 0) ? variants[index].resolve(req) : null;
+            if(encoded != null) {
+                body = encoded;
+                len = body.length();
+                res.setHeader("Content-Encoding", encodings[index]);
+            }
+        }
+        String etag = null;
+        long modified = -1;
+        if(conditional && (status == 200) && (body != null)) {
+            etag = body.etag();
+            modified = body.lastModified();
+            if(etag != null) res.setHeader("ETag", etag);
+            if(modified > 0) res.setDateHeader("Last-Modified", modified);
+            if(Validators.notModified(req, etag, modified)) {
+                res.setStatus(304);
+                addHeaders(res);
+                return false;
+            }
+        }
+        if(ranges && (status == 200) && (contentType != null) && (body != null) && body.isRangeable()) {
+            res.setHeader("Accept-Ranges", "bytes");
+            String range = req.getHeader("Range");
+            if((range != null) && "GET".equals(req.getMethod()) && Ranges.ifRange(req, etag, modified)) {
+                long size = body.length();
+                long[][] parts = Ranges.parse(range, size);
+                if(parts != null) return partial(req, res, body, size, parts);
+            }
+        }
+        if(contentType != null) res.setContentType(contentType);
+        if(len >= 0) res.setContentLengthLong(len);
+        res.setStatus(status);
+        addHeaders(res);
+        if((contentType != null) && (body != null)) {
+            try {
+                if(isAsync(req, body)) {
+                    AsyncWriter.start(req, res, bandwidth, new AsyncWriter.Segment(body, 0, body.length()));
+                    return true;
+                }
+                body.write(req, res);
+                res.getOutputStream().flush();
+            } catch(Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return false;
+    }
+
+    // 206 response with one range or multipart/byteranges or 416 if no range is satisfiable
+    private boolean partial(HttpServletRequest req, HttpServletResponse res, Content body, long size, long[][] parts) {
+        try {
+            if(parts.length == 0) {
+                res.setStatus(416);
+                res.setHeader("Content-Range", "bytes */" + size);
+                res.setContentLengthLong(0);
+                addHeaders(res);
+                return false;
+            }
+            res.setStatus(206);
+            addHeaders(res);
+            if(parts.length == 1) {
+                long count = parts[0][1] - parts[0][0] + 1;
+                res.setContentType(contentType);
+                res.setHeader("Content-Range", "bytes " + parts[0][0] + "-" + parts[0][1] + "/" + size);
+                res.setContentLengthLong(count);
+                if(isAsync(req, body)) {
+                    AsyncWriter.start(req, res, bandwidth, new AsyncWriter.Segment(body, parts[0][0], count));
+                    return true;
+                }
+                body.write(req, res, parts[0][0], count);
+                res.getOutputStream().flush();
+                return false;
+            }
+            String boundary = Long.toHexString(System.nanoTime()) + Long.toHexString(size);
+            byte[][] heads = new byte[parts.length][];
+            long total = 0;
+            for(int i = 0; i < parts.length; i++) {
+                heads[i] = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Range: bytes " + parts[i][0] + "-" + parts[i][1] + "/" + size + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                total = total + heads[i].length + parts[i][1] - parts[i][0] + 1;
+            }
+            byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            total = total + tail.length;
+            res.setContentType("multipart/byteranges; boundary=" + boundary);
+            res.setContentLengthLong(total);
+            if(isAsync(req, body)) {
+                AsyncWriter.Segment[] segments = new AsyncWriter.Segment[parts.length * 2 + 1];
+                for(int i = 0; i < parts.length; i++) {
+                    segments[2 * i] = new AsyncWriter.Segment(ByteContent.instance(heads[i]), 0, heads[i].length);
+                    segments[2 * i + 1] = new AsyncWriter.Segment(body, parts[i][0], parts[i][1] - parts[i][0] + 1);
+                }
+                segments[segments.length - 1] = new AsyncWriter.Segment(ByteContent.instance(tail), 0, tail.length);
+                AsyncWriter.start(req, res, bandwidth, segments);
+                return true;
+            }
+            OutputStream os = res.getOutputStream();
+            for(int i = 0; i < parts.length; i++) {
+                os.write(heads[i]);
+                body.write(os, parts[i][0], parts[i][1] - parts[i][0] + 1);
+            }
+            os.write(tail);
+            os.flush();
+            return false;
+        } catch(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isAsync(HttpServletRequest req, Content body) {
+        if(!body.isRangeable() || !req.isAsyncSupported()) return false;
+        if(bandwidth > 0) return true;
+        return async && !body.isContainerTransfer(req);
+    }
+
+    private void addHeaders(HttpServletResponse res) {
+        for(int i = 0; i < headerNames.length; i++) {
+            res.addHeader(headerNames[i], headerValues[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
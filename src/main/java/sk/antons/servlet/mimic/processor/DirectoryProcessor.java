@@ -0,0 +1,510 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import sk.antons.jaul.util.AsRuntimeEx;
+
+/**
+ * Processor serving files from directory tree which mirrors request paths.
+ * Tree is indexed once and request is mapped to file by one hash lookup.
+ *
+ * File name is path item optionally followed by request method and extension
+ * (like users/12.json, users/12.DELETE.json or orders/index.xml). Extension
+ * defines content type and files without method are used for all methods.
+ * If more files match request, content type is selected by Accept header.
+ * Request path can contain extension too (like users/12.json), then file
+ * is selected by extension instead of Accept header.
+ * Path equal to prefix and paths ending with '/' are mapped to index files.
+ * Request path is percent decoded before lookup (like '/files/a%20b').
+ *
+ * Processor returns false if there is no file for request, so next selector
+ * is evaluated. Files are served by content processor, so conditional
+ * and range requests are supported. Small files are served from content
+ * cache (shared by default), so no file is kept open for them. Bigger
+ * files are read by shared file channel which is closed when file is
+ * removed from index or processor is closed.
+ *
+ * Index can be updated incrementally by watching directory tree.
+ *
+ * @author antons
+ */
+public class DirectoryProcessor implements BiPredicate<HttpServletRequest, HttpServletResponse>, Closeable {
+
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE"));
+
+    private final File root;
+    private String prefix = "/";
+    private String index = "index";
+    private ContentCache cache = ContentCache.shared();
+    private long cacheLimit = 1024 * 1024;
+    private final Map<String, String> types = new HashMap<>();
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile WatchService watcher = null;
+    private final Map<WatchKey, Path> dirs = new ConcurrentHashMap<>();
+
+    private DirectoryProcessor(File root) {
+        this.root = root.getAbsoluteFile();
+        types.put("json", "application/json");
+        types.put("xml", "application/xml");
+        types.put("txt", "text/plain");
+        types.put("html", "text/html");
+        types.put("htm", "text/html");
+        types.put("csv", "text/csv");
+        types.put("js", "application/javascript");
+        types.put("css", "text/css");
+        types.put("png", "image/png");
+        types.put("jpg", "image/jpeg");
+        types.put("gif", "image/gif");
+        types.put("pdf", "application/pdf");
+        types.put("bin", "application/octet-stream");
+    }
+
+    /**
+     * Processor for directory tree.
+     * @param root root directory
+     * @return processor
+     */
+    public static DirectoryProcessor instance(File root) { return new DirectoryProcessor(root); }
+
+    public File root() { return root; }
+    public String prefix() { return prefix; }
+    /**
+     * Request path prefix mapped to root directory.
+     * @param value prefix (default /)
+     * @return this
+     */
+    public DirectoryProcessor prefix(String value) { this.prefix = value.endsWith("/") ? value : value + "/"; return this; }
+    /**
+     * File name used for directory paths.
+     * @param value name without extension (default index)
+     * @return this
+     */
+    public DirectoryProcessor index(String value) { this.index = value; return this; }
+    /**
+     * Content type of files with given extension. Files with unknown
+     * extension are served as application/octet-stream.
+     * @param extension file extension (like json)
+     * @param contentType content type
+     * @return this
+     */
+    public DirectoryProcessor contentType(String extension, String contentType) { this.types.put(extension, contentType); return this; }
+    /**
+     * Cache for file contents (all files are read by shared channel if it is null).
+     * @param value cache (default shared cache)
+     * @return this
+     */
+    public DirectoryProcessor cache(ContentCache value) { this.cache = value; return this; }
+    /**
+     * Max size of file served from cache. Bigger files are read by shared
+     * file channel.
+     * @param value size in bytes (default 1MB)
+     * @return this
+     */
+    public DirectoryProcessor cacheLimit(long value) { this.cacheLimit = value; return this; }
+    /**
+     * Number of indexed request paths.
+     * @return size of index
+     */
+    public int size() { return entries.size(); }
+
+    /**
+     * Builds new index of whole directory tree.
+     * @return this
+     */
+    public DirectoryProcessor scan() {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        scan(root, map);
+        Map<String, Entry> old = this.entries;
+        this.entries = map;
+        for(Entry entry : old.values()) close(entry.variants);
+        return this;
+    }
+
+    /**
+     * Starts watching of directory tree. Created and deleted files update
+     * only their index entries (changed files are detected by content).
+     * Directories are registered before tree is scanned and events are
+     * processed after scan, so no change is lost and scan is not mixed
+     * with updates. Watching thread is daemon and it is stopped by close().
+     * @return this
+     */
+    public synchronized DirectoryProcessor watch() {
+        if(watcher != null) throw new IllegalStateException("directory is already watched");
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            register(root);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+        scan();
+        final WatchService ws = watcher;
+        Thread thread = new Thread(() -> watch(ws), "mimic-directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Stops watching of directory tree and closes open files. Processor
+     * can be still used, files are opened again by next requests.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(watcher != null) watcher.close();
+        watcher = null;
+        dirs.clear();
+        for(Entry entry : entries.values()) close(entry.variants);
+    }
+
+    @Override
+    public boolean test(HttpServletRequest req, HttpServletResponse res) {
+        String path = decode(req.getRequestURI());
+        String rest = null;
+        if(path == null) return false;
+        if(path.startsWith(prefix)) rest = path.substring(prefix.length());
+        else if((path.length() == prefix.length() - 1) && prefix.startsWith(path)) rest = "";
+        if(rest == null) return false;
+        if(rest.isEmpty() || rest.endsWith("/")) rest = rest + index;
+        String extension = null;
+        Entry entry = entries.get(rest);
+        if(entry == null) {
+            // file extension in request path (index keys are without extension)
+            int pos = rest.lastIndexOf('.');
+            if(pos <= rest.lastIndexOf('/') + 1) return false;
+            extension = rest.substring(pos + 1);
+            entry = entries.get(rest.substring(0, pos));
+            if(entry == null) return false;
+        }
+        Variant variant = entry.select(req.getMethod(), req.getHeader("Accept"), extension);
+        if(variant == null) return false;
+        return variant.processor().test(req, res);
+    }
+
+    private void scan(File dir, Map<String, Entry> map) {
+        File[] files = dir.listFiles();
+        if(files == null) return;
+        for(File file : files) {
+            if(file.isDirectory()) scan(file, map);
+            else add(file, map);
+        }
+    }
+
+    private void add(File file, Map<String, Entry> map) {
+        Variant variant = variant(file);
+        if(variant == null) return;
+        map.compute(variant.key, (k, entry) -> (entry == null) ? new Entry(new Variant[] {variant}) : entry.add(variant));
+    }
+
+    private void remove(File file, Map<String, Entry> map) {
+        Variant variant = variant(file);
+        if(variant == null) return;
+        List<Variant> removed = new ArrayList<>();
+        map.computeIfPresent(variant.key, (k, entry) -> entry.remove(variant.file, removed));
+        close(removed);
+    }
+
+    private void removeTree(File dir, Map<String, Entry> map) {
+        String path = dir.getPath() + File.separator;
+        List<Variant> removed = new ArrayList<>();
+        for(String key : new ArrayList<>(map.keySet())) {
+            map.computeIfPresent(key, (k, entry) -> entry.removeTree(path, removed));
+        }
+        close(removed);
+    }
+
+    // requests in progress finish writing, file channel is closed after them
+    private static void close(Variant[] variants) {
+        close(Arrays.asList(variants));
+    }
+
+    private static void close(List<Variant> variants) {
+        for(Variant variant : variants) variant.close();
+    }
+
+    // percent decoding of request path ('+' is not space in path)
+    private static String decode(String path) {
+        if((path == null) || (path.indexOf('%') < 0)) return path;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        StringBuilder sb = new StringBuilder(path.length());
+        for(int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if((c == '%') && (i + 2 < path.length()) && (Character.digit(path.charAt(i + 1), 16) >= 0) && (Character.digit(path.charAt(i + 2), 16) >= 0)) {
+                bytes.write((Character.digit(path.charAt(i + 1), 16) << 4) + Character.digit(path.charAt(i + 2), 16));
+                i = i + 2;
+            } else {
+                if(bytes.size() > 0) {
+                    sb.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+                    bytes.reset();
+                }
+                sb.append(c);
+            }
+        }
+        if(bytes.size() > 0) sb.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+
+    // request path and method of file
+    private Variant variant(File file) {
+        String relative = root.toPath().relativize(file.getAbsoluteFile().toPath()).toString();
+        if(relative.startsWith("..")) return null;
+        relative = relative.replace(File.separatorChar, '/');
+        int slash = relative.lastIndexOf('/');
+        String dir = relative.substring(0, slash + 1);
+        String name = relative.substring(slash + 1);
+        String extension = null;
+        int pos = name.lastIndexOf('.');
+        if(pos > 0) {
+            extension = name.substring(pos + 1);
+            name = name.substring(0, pos);
+        }
+        String method = null;
+        pos = name.lastIndexOf('.');
+        if((pos > 0) && METHODS.contains(name.substring(pos + 1))) {
+            method = name.substring(pos + 1);
+            name = name.substring(0, pos);
+        }
+        String type = (extension == null) ? null : types.get(extension);
+        return new Variant(dir + name, method, (type == null) ? "application/octet-stream" : type, file.getAbsoluteFile());
+    }
+
+    private void register(File dir) throws IOException {
+        Path path = dir.toPath();
+        dirs.put(path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), path);
+        File[] files = dir.listFiles();
+        if(files == null) return;
+        for(File file : files) {
+            if(file.isDirectory()) register(file);
+        }
+    }
+
+    private void watch(WatchService ws) {
+        try {
+            while(true) {
+                WatchKey key = ws.take();
+                Path dir = dirs.get(key);
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scan();
+                        continue;
+                    }
+                    if(dir == null) continue;
+                    File file = dir.resolve((Path)event.context()).toFile();
+                    Map<String, Entry> map = entries;
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        remove(file, map);
+                        removeTree(file, map);
+                    } else if(file.isDirectory()) {
+                        if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            try {
+                                register(file);
+                            } catch(IOException e) {
+                                // directory is deleted already
+                            }
+                            scan(file, map);
+                        }
+                    } else if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        add(file, map);
+                    }
+                }
+                if(!key.reset()) dirs.remove(key);
+            }
+        } catch(ClosedWatchServiceException | InterruptedException e) {
+            // watching stopped
+        }
+    }
+
+    /**
+     * Files mapped to one request path. Instance is immutable.
+     */
+    private static class Entry {
+        private final Variant[] variants;
+
+        private Entry(Variant[] variants) { this.variants = variants; }
+
+        private Variant select(String method, String accept, String extension) {
+            List<Variant> list = new ArrayList<>(variants.length);
+            for(Variant variant : variants) {
+                if(method.equals(variant.method)) list.add(variant);
+            }
+            if(list.isEmpty() && "HEAD".equals(method)) {
+                for(Variant variant : variants) {
+                    if("GET".equals(variant.method)) list.add(variant);
+                }
+            }
+            if(list.isEmpty()) {
+                for(Variant variant : variants) {
+                    if(variant.method == null) list.add(variant);
+                }
+            }
+            if(list.isEmpty()) return null;
+            if(extension != null) {
+                String suffix = "." + extension;
+                for(Variant variant : list) {
+                    if(variant.file.getName().endsWith(suffix)) return variant;
+                }
+                return null;
+            }
+            if((list.size() == 1) || (accept == null)) return list.get(0);
+            for(String range : accepted(accept)) {
+                for(Variant variant : list) {
+                    if(matches(range, variant.contentType)) return variant;
+                }
+            }
+            return list.get(0);
+        }
+
+        private Entry add(Variant variant) {
+            for(Variant v : variants) {
+                if(v.file.equals(variant.file)) return this;
+            }
+            Variant[] rv = Arrays.copyOf(variants, variants.length + 1);
+            rv[variants.length] = variant;
+            Arrays.sort(rv, (a, b) -> a.file.getName().compareTo(b.file.getName()));
+            return new Entry(rv);
+        }
+
+        private Entry remove(File file, List<Variant> removed) {
+            List<Variant> list = new ArrayList<>(variants.length);
+            for(Variant v : variants) {
+                if(!v.file.equals(file)) list.add(v);
+                else removed.add(v);
+            }
+            if(list.size() == variants.length) return this;
+            return list.isEmpty() ? null : new Entry(list.toArray(new Variant[list.size()]));
+        }
+
+        private Entry removeTree(String path, List<Variant> removed) {
+            List<Variant> list = new ArrayList<>(variants.length);
+            for(Variant v : variants) {
+                if(!v.file.getPath().startsWith(path)) list.add(v);
+                else removed.add(v);
+            }
+            if(list.size() == variants.length) return this;
+            return list.isEmpty() ? null : new Entry(list.toArray(new Variant[list.size()]));
+        }
+
+        // media ranges ordered by quality
+        private static List<String> accepted(String accept) {
+            List<String> ranges = new ArrayList<>();
+            List<Double> qualities = new ArrayList<>();
+            for(String item : accept.split(",")) {
+                String[] parts = item.split(";");
+                String range = parts[0].trim().toLowerCase();
+                double q = 1;
+                for(int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if(param.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(param.substring(2));
+                        } catch(NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                if(range.isEmpty() || (q <= 0)) continue;
+                int pos = 0;
+                while((pos < qualities.size()) && (qualities.get(pos) >= q)) pos++;
+                ranges.add(pos, range);
+                qualities.add(pos, q);
+            }
+            return ranges.isEmpty() ? Collections.singletonList("*/*") : ranges;
+        }
+
+        private static boolean matches(String range, String contentType) {
+            if("*/*".equals(range)) return true;
+            if(range.endsWith("/*")) return contentType.startsWith(range.substring(0, range.length() - 1));
+            return range.equals(contentType);
+        }
+    }
+
+    /**
+     * One file of request path. Processor is created by first request.
+     */
+    private class Variant {
+        private final String key;
+        private final String method;
+        private final String contentType;
+        private final File file;
+        private volatile ContentProcessor processor = null;
+        private Content content = null;
+
+        private Variant(String key, String method, String contentType, File file) {
+            this.key = key;
+            this.method = method;
+            this.contentType = contentType;
+            this.file = file;
+        }
+
+        private ContentProcessor processor() {
+            ContentProcessor rv = processor;
+            if(rv != null) return rv;
+            // one content per variant, so no file channel is left open
+            synchronized(this) {
+                if(processor == null) {
+                    content = content();
+                    processor = ContentProcessor.instance("file: " + file.getPath(), 200, -1, contentType, new ArrayList<>(), content, null, true, true, false, null, 0);
+                }
+                return processor;
+            }
+        }
+
+        private synchronized void close() {
+            if(content instanceof FileContent) ((FileContent)content).close();
+            if(content instanceof CachedContent) ((CachedContent)content).close();
+        }
+
+        private Content content() {
+            if((cache == null) || (file.length() > cacheLimit)) return FileContent.instance(file);
+            return CachedContent.instance(cache, "file:" + file.getPath(), file, () -> {
+                try {
+                    return new FileInputStream(file);
+                } catch(Exception e) {
+                    throw AsRuntimeEx.argument(e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "directory: " + root.getPath() + " as " + prefix;
+    }
+}
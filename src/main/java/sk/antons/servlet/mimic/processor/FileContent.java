@@ -0,0 +1,312 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Content of file. File is read by shared read only channel with positional
+ * reads to pooled buffers, so no stream is opened per request. Channel is reopened if file
+ * size or modification time is changed. Channel is reference counted, so
+ * replaced (or closed) channel is closed only after last running write
+ * finishes with it. If container supports sendfile (tomcat), file is
+ * transfered by container without copying.
+ *
+ * Content resolved for request is bound to one version of file, so length,
+ * etag and written bytes of one response are consistent.
+ * @author antons
+ */
+public class FileContent implements Content, Closeable {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final File file;
+    private final String path;
+    private volatile State state = null;
+
+    public FileContent(File file) {
+        this.file = file;
+        this.path = file.getAbsolutePath();
+    }
+
+    public static FileContent instance(File file) { return new FileContent(file); }
+
+    public File file() { return file; }
+    /**
+     * Checks if shared channel is open.
+     * @return true if channel is open
+     */
+    public boolean isOpen() {
+        State current = state;
+        return (current != null) && current.channel.isOpen();
+    }
+
+    @Override
+    public long length() {
+        return file.length();
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        State current = acquire();
+        try {
+            write(current.channel, 0, current.size, os);
+        } finally {
+            current.release();
+        }
+    }
+
+    @Override
+    public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        view().write(request, response);
+    }
+
+    @Override
+    public Content resolve(HttpServletRequest request) {
+        try {
+            return view();
+        } catch(IOException e) {
+            // missing file fails on write
+            return this;
+        }
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        State current = acquire();
+        try {
+            write(current.channel, position, count, os);
+        } finally {
+            current.release();
+        }
+    }
+
+    @Override
+    public boolean isContainerTransfer(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+    }
+
+    @Override
+    public void write(HttpServletRequest request, HttpServletResponse response, long position, long count) throws IOException {
+        if(isContainerTransfer(request)) {
+            request.setAttribute(SENDFILE_FILENAME, path);
+            request.setAttribute(SENDFILE_START, Long.valueOf(position));
+            request.setAttribute(SENDFILE_END, Long.valueOf(position + count));
+        } else {
+            write(response.getOutputStream(), position, count);
+        }
+    }
+
+    @Override
+    public String etag() {
+        return Validators.etag(file.length(), file.lastModified());
+    }
+
+    @Override
+    public long lastModified() {
+        return file.lastModified();
+    }
+
+    // positional reads to pooled buffer (channel position is not changed, so channel can be shared)
+    private static void write(FileChannel channel, long position, long count, OutputStream os) throws IOException {
+        byte[] buf = BufferPool.take();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(buf);
+            long end = position + count;
+            while(position < end) {
+                buffer.clear();
+                buffer.limit((int)Math.min(buf.length, end - position));
+                int read = channel.read(buffer, position);
+                if(read <= 0) break;
+                os.write(buf, 0, read);
+                position = position + read;
+            }
+        } finally {
+            BufferPool.release(buf);
+        }
+    }
+
+    /**
+     * Releases shared channel. Channel is closed when running writes finish.
+     * Content is still usable, next write opens channel again.
+     */
+    @Override
+    public void close() {
+        State old;
+        synchronized(this) {
+            old = state;
+            state = null;
+        }
+        if(old != null) old.release();
+    }
+
+    private View view() throws IOException {
+        State current = acquire();
+        try {
+            return new View(current);
+        } finally {
+            current.release();
+        }
+    }
+
+    // file change is detected by size and modification time
+    // returned state must be released by caller
+    private State acquire() throws IOException {
+        while(true) {
+            long size = file.length();
+            long modified = file.lastModified();
+            State current = state;
+            if((current != null) && (current.size == size) && (current.modified == modified) && current.channel.isOpen() && current.retain()) return current;
+            synchronized(this) {
+                if(state == current) {
+                    State created = new State(FileChannel.open(file.toPath(), StandardOpenOption.READ), size, modified);
+                    state = created;
+                    // reference of replaced state owned by this content
+                    if(current != null) current.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Content of one version of file. It holds no channel reference, bound
+     * channel is retained only by writes. If it is already closed (content
+     * was closed), channel is opened again if file is not changed.
+     */
+    private class View implements Content {
+        private final State state;
+
+        private View(State state) {
+            this.state = state;
+        }
+
+        @Override
+        public long length() {
+            return state.size;
+        }
+
+        @Override
+        public void write(OutputStream os) throws IOException {
+            write(os, 0, state.size);
+        }
+
+        @Override
+        public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            write(request, response, 0, state.size);
+        }
+
+        @Override
+        public boolean isRangeable() {
+            return true;
+        }
+
+        @Override
+        public void write(OutputStream os, long position, long count) throws IOException {
+            State current = retain();
+            try {
+                FileContent.write(current.channel, position, count, os);
+            } finally {
+                current.release();
+            }
+        }
+
+        @Override
+        public boolean isContainerTransfer(HttpServletRequest request) {
+            return FileContent.this.isContainerTransfer(request);
+        }
+
+        @Override
+        public void write(HttpServletRequest request, HttpServletResponse response, long position, long count) throws IOException {
+            if(isContainerTransfer(request)) {
+                request.setAttribute(SENDFILE_FILENAME, path);
+                request.setAttribute(SENDFILE_START, Long.valueOf(position));
+                request.setAttribute(SENDFILE_END, Long.valueOf(position + count));
+            } else {
+                write(response.getOutputStream(), position, count);
+            }
+        }
+
+        @Override
+        public String etag() {
+            return Validators.etag(state.size, state.modified);
+        }
+
+        @Override
+        public long lastModified() {
+            return state.modified;
+        }
+
+        private State retain() throws IOException {
+            if(state.retain()) return state;
+            State current = acquire();
+            if((current.size == state.size) && (current.modified == state.modified)) return current;
+            current.release();
+            throw new IOException("file " + path + " was changed while it was written");
+        }
+    }
+
+    /**
+     * Channel with reference count. Content holds one reference while state
+     * is current, each write holds one while it reads.
+     */
+    private static class State {
+        private final FileChannel channel;
+        private final long size;
+        private final long modified;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private State(FileChannel channel, long size, long modified) {
+            this.channel = channel;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        private boolean retain() {
+            while(true) {
+                int count = references.get();
+                if(count == 0) return false;
+                if(references.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        private void release() {
+            if(references.decrementAndGet() != 0) return;
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // nothing to do with closed file
+            }
+        }
+    }
+
+}
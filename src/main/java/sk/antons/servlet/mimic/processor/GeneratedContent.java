@@ -0,0 +1,296 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic content generated on the fly. Each byte is computed only from
+ * its position and seed, so content is deterministic, any part of it can be
+ * written without generating previous bytes and memory usage doesn't depend
+ * on content length.
+ * @author antons
+ */
+public abstract class GeneratedContent implements Content {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final byte[] ALPHANUM = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.US_ASCII);
+
+    protected final long length;
+    protected final long seed;
+    private final long created = System.currentTimeMillis();
+
+    protected GeneratedContent(long length, long seed) {
+        if(length < 0) throw new IllegalArgumentException("negative length " + length);
+        this.length = length;
+        this.seed = seed;
+    }
+
+    /**
+     * Random bytes.
+     * @param length content length
+     * @param seed random seed
+     * @return content
+     */
+    public static GeneratedContent bytes(long length, long seed) { return new RandomBytes(length, seed); }
+
+    /**
+     * Json array of objects like {"id":"0001","value":"x4Tz..."}.
+     * @param count number of array elements
+     * @param valueLength length of random value in each element
+     * @param seed random seed
+     * @return content
+     */
+    public static GeneratedContent jsonArray(long count, int valueLength, long seed) {
+        return new Records(count, seed, "[", "{\"id\":\"", "\",\"value\":\"", "\"}", ",", "]", valueLength);
+    }
+
+    /**
+     * Csv rows like 0001,x4Tz... with header line id,value. Each line
+     * (header too) ends by new line.
+     * @param count number of rows
+     * @param valueLength length of random value in each row
+     * @param seed random seed
+     * @return content
+     */
+    public static GeneratedContent csv(long count, int valueLength, long seed) {
+        return new Records(count, seed, "id,value", "\n", ",", "", "", "\n", valueLength);
+    }
+
+    /**
+     * Fills buffer by content bytes.
+     * @param position position of first byte
+     * @param buffer target buffer
+     * @param len number of bytes
+     */
+    protected abstract void fill(long position, byte[] buffer, int len);
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        write(os, 0, length);
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        byte[] buf = BufferPool.take();
+        try {
+            long end = Math.min(position + count, length);
+            while(position < end) {
+                int len = (int)Math.min(buf.length, end - position);
+                fill(position, buf, len);
+                os.write(buf, 0, len);
+                position = position + len;
+            }
+        } finally {
+            BufferPool.release(buf);
+        }
+    }
+
+    /**
+     * Content is given by its parameters.
+     */
+    @Override
+    public String etag() {
+        return "\"" + getClass().getSimpleName().toLowerCase() + "-" + Long.toHexString(length) + "-" + Long.toHexString(seed) + "\"";
+    }
+
+    @Override
+    public long lastModified() {
+        return created;
+    }
+
+    // splitmix64 finalizer
+    protected static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    protected static long random(long seed, long index) {
+        return mix(seed + (index + 1) * GOLDEN);
+    }
+
+    /**
+     * Random bytes. Each 8 bytes are one hashed long.
+     */
+    private static class RandomBytes extends GeneratedContent {
+
+        private RandomBytes(long length, long seed) {
+            super(length, seed);
+        }
+
+        @Override
+        protected void fill(long position, byte[] buffer, int len) {
+            long word = position >>> 3;
+            int shift = (int)(position & 7);
+            long value = random(seed, word);
+            for(int i = 0; i < len; i++) {
+                buffer[i] = (byte)(value >>> (shift << 3));
+                shift++;
+                if(shift == 8) {
+                    shift = 0;
+                    word++;
+                    value = random(seed, word);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "random bytes " + length;
+        }
+    }
+
+    /**
+     * Head, records separated by separator and tail. All records have same
+     * length (record id is padded by zeros), so position of any record
+     * is computed directly.
+     */
+    private static class Records extends GeneratedContent {
+
+        private final long count;
+        private final byte[] head;
+        private final byte[] prefix;
+        private final byte[] middle;
+        private final byte[] suffix;
+        private final byte[] separator;
+        private final byte[] tail;
+        private final int digits;
+        private final int valueLength;
+        private final int recordLength;
+        private final long period;
+
+        private Records(long count, long seed, String head, String prefix, String middle, String suffix, String separator, String tail, int valueLength) {
+            super(length(count, head, prefix, middle, suffix, separator, tail, valueLength), seed);
+            this.count = count;
+            this.head = head.getBytes(StandardCharsets.UTF_8);
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+            this.middle = middle.getBytes(StandardCharsets.UTF_8);
+            this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+            this.separator = separator.getBytes(StandardCharsets.UTF_8);
+            this.tail = tail.getBytes(StandardCharsets.UTF_8);
+            this.digits = digits(count);
+            this.valueLength = valueLength;
+            this.recordLength = this.prefix.length + digits + this.middle.length + valueLength + this.suffix.length;
+            this.period = recordLength + this.separator.length;
+        }
+
+        private static long length(long count, String head, String prefix, String middle, String suffix, String separator, String tail, int valueLength) {
+            if(count < 0) throw new IllegalArgumentException("negative count " + count);
+            if(valueLength < 0) throw new IllegalArgumentException("negative value length " + valueLength);
+            long record = prefix.length() + digits(count) + middle.length() + valueLength + suffix.length();
+            long records = (count == 0) ? 0 : count * record + (count - 1) * separator.length();
+            return head.length() + records + tail.length();
+        }
+
+        private static int digits(long count) {
+            return Math.max(1, Long.toString(Math.max(0, count - 1)).length());
+        }
+
+        // content is copied by whole parts (head, record, separator, tail)
+        @Override
+        protected void fill(long position, byte[] buffer, int len) {
+            long recordsEnd = length - tail.length;
+            int i = 0;
+            while(i < len) {
+                long pos = position + i;
+                int num;
+                if(pos < head.length) {
+                    num = copy(head, 0, (int)pos, (int)pos + len - i, buffer, i);
+                } else if(pos >= recordsEnd) {
+                    num = copy(tail, 0, (int)(pos - recordsEnd), (int)(pos - recordsEnd) + len - i, buffer, i);
+                } else {
+                    long offset = pos - head.length;
+                    long index = offset / period;
+                    int inner = (int)(offset % period);
+                    if(inner >= recordLength) {
+                        num = copy(separator, 0, inner - recordLength, inner - recordLength + len - i, buffer, i);
+                    } else {
+                        num = record(index, inner, (int)Math.min(recordLength, inner + (long)len - i), buffer, i);
+                    }
+                }
+                i = i + num;
+            }
+        }
+
+        // writes bytes from..end of record to buffer at offset and returns number of written bytes
+        private int record(long index, int from, int end, byte[] buffer, int offset) {
+            int pos = 0;
+            copy(prefix, pos, from, end, buffer, offset);
+            pos = pos + prefix.length;
+            if((from < pos + digits) && (end > pos)) {
+                long id = index;
+                for(int i = digits - 1; i >= 0; i--) {
+                    int p = pos + i;
+                    if((p >= from) && (p < end)) buffer[offset + p - from] = (byte)('0' + (id % 10));
+                    id = id / 10;
+                }
+            }
+            pos = pos + digits;
+            copy(middle, pos, from, end, buffer, offset);
+            pos = pos + middle.length;
+            int first = Math.max(from, pos) - pos;
+            int last = Math.min(end, pos + valueLength) - pos;
+            if(first < last) value(index, first, last, buffer, offset + pos + first - from);
+            pos = pos + valueLength;
+            copy(suffix, pos, from, end, buffer, offset);
+            return end - from;
+        }
+
+        // random value characters, each 8 characters are one hashed long
+        private void value(long index, int from, int end, byte[] buffer, int offset) {
+            long word = (index * ((valueLength + 7) / 8 + 1)) + (from >>> 3);
+            int shift = from & 7;
+            long value = random(seed, word);
+            for(int i = from; i < end; i++) {
+                buffer[offset++] = ALPHANUM[(int)(((value >>> (shift << 3)) & 0xff) % ALPHANUM.length)];
+                shift++;
+                if((shift == 8) && (i + 1 < end)) {
+                    shift = 0;
+                    word++;
+                    value = random(seed, word);
+                }
+            }
+        }
+
+        // copies bytes from..end of part placed at pos to buffer at offset and returns number of copied bytes
+        private static int copy(byte[] part, int pos, int from, int end, byte[] buffer, int offset) {
+            int first = Math.max(from, pos);
+            int last = Math.min(end, pos + part.length);
+            if(first >= last) return 0;
+            System.arraycopy(part, first - pos, buffer, offset + first - from, last - first);
+            return last - first;
+        }
+
+        @Override
+        public String toString() {
+            return "records " + count;
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Response delay. Delay is fixed or it is sampled from log-normal
+ * distribution given by median (p50) and 99th percentile (p99).
+ * @author antons
+ */
+public class Latency {
+
+    // z score of 99th percentile of normal distribution
+    private static final double Z99 = 2.3263;
+
+    private final long p50;
+    private final long p99;
+    private final double mu;
+    private final double sigma;
+
+    private Latency(long p50, long p99) {
+        if(p50 < 0) throw new IllegalArgumentException("negative delay " + p50);
+        if(p99 < p50) throw new IllegalArgumentException("p99 " + p99 + " is lower than p50 " + p50);
+        if((p50 == 0) && (p99 > 0)) throw new IllegalArgumentException("zero p50 with p99 " + p99 + " can't be log-normal distributed");
+        this.p50 = p50;
+        this.p99 = p99;
+        this.mu = (p50 > 0) ? Math.log(p50) : 0;
+        this.sigma = (p50 > 0) ? Math.log((double)p99 / p50) / Z99 : 0;
+    }
+
+    /**
+     * Fixed delay.
+     * @param millis delay in milliseconds
+     * @return latency
+     */
+    public static Latency fixed(long millis) { return new Latency(millis, millis); }
+    /**
+     * Log-normal distributed delay. Median must be positive if p99 is
+     * greater than median (log-normal distribution has no zero median).
+     * @param p50 median delay in milliseconds
+     * @param p99 99th percentile of delay in milliseconds
+     * @return latency
+     */
+    public static Latency percentiles(long p50, long p99) { return new Latency(p50, p99); }
+
+    public long p50() { return p50; }
+    public long p99() { return p99; }
+
+    /**
+     * Delay for one response.
+     * @return delay in milliseconds
+     */
+    public long next() {
+        if(sigma == 0) return p50;
+        return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    @Override
+    public String toString() {
+        return (p50 == p99) ? p50 + "ms" : "p50 " + p50 + "ms p99 " + p99 + "ms";
+    }
+
+}
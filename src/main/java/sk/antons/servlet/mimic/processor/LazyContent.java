@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Content loaded by first use. Loading is single flight, so concurrent
+ * first requests wait for one load. If loading fails, error is thrown to
+ * waiting requests and next request tries to load content again.
+ *
+ * Content can be loaded in advance by prefetch() (it is used for parallel
+ * loading of resources while servlet is built).
+ * @author antons
+ */
+public class LazyContent implements Content {
+
+    // loaded encoded variant which is not smaller than content
+    private static final Content NOT_ENCODED = ByteContent.instance(new byte[0]);
+    private final Supplier<Content> loader;
+    private final boolean body;
+    private final boolean encodable;
+    private final AtomicReference<FutureTask<Content>> task = new AtomicReference<>();
+    private volatile Content content = null;
+    private volatile boolean prefetched = false;
+
+    private LazyContent(Supplier<Content> loader, boolean body, boolean encodable) {
+        this.loader = loader;
+        this.body = body;
+        this.encodable = encodable;
+    }
+
+    /**
+     * Content loaded by first use.
+     * @param loader content loader
+     * @param body true if loaded content can read request content
+     *    (it must be known before content is loaded)
+     * @param encodable true if loaded content is static (ByteContent) and
+     *    it can be compressed
+     * @return content
+     */
+    public static LazyContent instance(Supplier<Content> loader, boolean body, boolean encodable) { return new LazyContent(loader, body, encodable); }
+
+    /**
+     * Marks content to be loaded while servlet is built.
+     * @return this
+     */
+    public LazyContent prefetched(boolean value) { this.prefetched = value; return this; }
+    public boolean isPrefetched() { return prefetched; }
+    public boolean isLoaded() { return content != null; }
+
+    /**
+     * Loads content if it is not loaded.
+     * @return this
+     */
+    public LazyContent prefetch() { content(); return this; }
+
+    /**
+     * Loaded content. Content is loaded by first call.
+     * @return content
+     */
+    public Content content() {
+        Content rv = content;
+        if(rv != null) return rv;
+        FutureTask<Content> current = task.get();
+        if(current == null) {
+            FutureTask<Content> created = new FutureTask<>(loader::get);
+            current = task.compareAndSet(null, created) ? created : task.get();
+        }
+        // only first caller runs loader, others wait for result
+        current.run();
+        try {
+            rv = current.get();
+            content = rv;
+            return rv;
+        } catch(ExecutionException e) {
+            task.compareAndSet(current, null);
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IllegalStateException(cause);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long length() {
+        return loaded().length();
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        loaded().write(os);
+    }
+
+    @Override
+    public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        loaded().write(request, response);
+    }
+
+    /**
+     * Loaded content for request. Encoded variant resolves to null if
+     * encoding does not reduce size of content.
+     */
+    @Override
+    public Content resolve(HttpServletRequest request) {
+        Content rv = content();
+        return (rv == NOT_ENCODED) ? null : rv.resolve(request);
+    }
+
+    @Override
+    public boolean usesRequestBody() {
+        return body;
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return loaded().isRangeable();
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        loaded().write(os, position, count);
+    }
+
+    @Override
+    public void write(HttpServletRequest request, HttpServletResponse response, long position, long count) throws IOException {
+        loaded().write(request, response, position, count);
+    }
+
+    @Override
+    public boolean isContainerTransfer(HttpServletRequest request) {
+        return loaded().isContainerTransfer(request);
+    }
+
+    /**
+     * Encoded variant is also loaded by first use. Variant must exist before
+     * content is loaded, so sizes are compared when it is loaded and variant
+     * resolves to null if encoded content is not smaller (identity content
+     * is used then).
+     */
+    @Override
+    public Content encoded(String encoding) {
+        if(!encodable) return null;
+        return new LazyContent(() -> {
+            Content encoded = content().encoded(encoding);
+            return (encoded == null) ? NOT_ENCODED : encoded;
+        }, body, false).prefetched(prefetched);
+    }
+
+    @Override
+    public String etag() {
+        return loaded().etag();
+    }
+
+    @Override
+    public long lastModified() {
+        return loaded().lastModified();
+    }
+
+    private Content loaded() {
+        Content rv = content();
+        if(rv == NOT_ENCODED) throw new IllegalStateException("content is not encoded");
+        return rv;
+    }
+
+    @Override
+    public String toString() {
+        return "lazy: " + (isLoaded() ? content : "not loaded");
+    }
+}
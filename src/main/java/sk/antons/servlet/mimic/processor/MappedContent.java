@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Static content stored in buffer (like memory mapped snapshot file).
+ * Content is not copied to heap. It is written by pooled buffer chunks,
+ * because servlet output stream accepts only byte arrays.
+ * @author antons
+ */
+public class MappedContent implements Content {
+
+    private final ByteBuffer data;
+    private final String etag;
+    private final long lastModified;
+
+    private MappedContent(ByteBuffer data, String etag, long lastModified) {
+        this.data = data.asReadOnlyBuffer();
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Content of buffer (from position to limit).
+     * @param data content buffer
+     * @param etag precomputed etag (can be null)
+     * @param lastModified last modification time (or -1)
+     * @return content
+     */
+    public static MappedContent instance(ByteBuffer data, String etag, long lastModified) { return new MappedContent(data.slice(), etag, lastModified); }
+
+    @Override
+    public long length() {
+        return data.limit();
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        write(os, 0, data.limit());
+    }
+
+    @Override
+    public boolean isRangeable() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream os, long position, long count) throws IOException {
+        // own view, so concurrent writes don't share buffer position
+        ByteBuffer view = data.duplicate();
+        ((Buffer)view).position((int)position);
+        ((Buffer)view).limit((int)(position + count));
+        byte[] buf = BufferPool.take();
+        try {
+            while(view.hasRemaining()) {
+                int len = Math.min(buf.length, view.remaining());
+                view.get(buf, 0, len);
+                os.write(buf, 0, len);
+            }
+        } finally {
+            BufferPool.release(buf);
+        }
+    }
+
+    @Override
+    public String etag() {
+        return etag;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "mapped: " + data.limit() + " bytes";
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper for Range and If-Range request headers.
+ * @author antons
+ */
+class Ranges {
+
+    /** max number of ranges in one request, more ranges are ignored */
+    private static final int MAX_RANGES = 32;
+
+    /**
+     * Parses Range header.
+     * @param header Range header value
+     * @param length content length
+     * @return array of [first, last] byte positions, empty array if no range
+     *    is satisfiable or null if header should be ignored
+     */
+    public static long[][] parse(String header, long length) {
+        if(header == null) return null;
+        header = header.trim();
+        if(!header.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        String[] items = header.substring(6).split(",");
+        if(items.length > MAX_RANGES) return null;
+        List<long[]> list = new ArrayList<>();
+        for(String item : items) {
+            item = item.trim();
+            int pos = item.indexOf('-');
+            if(pos < 0) return null;
+            String first = item.substring(0, pos).trim();
+            String last = item.substring(pos + 1).trim();
+            try {
+                long start;
+                long end;
+                if(first.isEmpty()) {
+                    if(last.isEmpty()) return null;
+                    long suffix = Long.parseLong(last);
+                    if(suffix <= 0) continue;
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if(end < start) return null; // invalid range
+                    end = Math.min(end, length - 1);
+                }
+                if((start < 0) || (start >= length) || (end < start)) continue;
+                list.add(new long[] {start, end});
+            } catch(NumberFormatException e) {
+                return null;
+            }
+        }
+        return list.toArray(new long[list.size()][]);
+    }
+
+    /**
+     * Checks If-Range header. Range is used only if content was not changed.
+     * @param request request
+     * @param etag content entity tag (can be null)
+     * @param modified content modification time (negative if unknown)
+     * @return true if range can be used
+     */
+    public static boolean ifRange(HttpServletRequest request, String etag, long modified) {
+        String value = request.getHeader("If-Range");
+        if(value == null) return true;
+        value = value.trim();
+        if(value.startsWith("\"") || value.startsWith("W/")) {
+            return (etag != null) && !etag.startsWith("W/") && value.equals(etag);
+        }
+        if(modified < 0) return false;
+        try {
+            long date = request.getDateHeader("If-Range");
+            return (date >= 0) && (date / 1000 == modified / 1000);
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Content provided by new stream for each request.
+ * @author antons
+ */
+public class StreamContent implements Content {
+
+    private final Supplier<InputStream> supplier;
+    private final long length;
+
+    public StreamContent(Supplier<InputStream> supplier, long length) {
+        this.supplier = supplier;
+        this.length = length;
+    }
+
+    public static StreamContent instance(Supplier<InputStream> supplier) { return new StreamContent(supplier, -1); }
+    public static StreamContent instance(Supplier<InputStream> supplier, long length) { return new StreamContent(supplier, length); }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        InputStream is = supplier.get();
+        byte[] buf = BufferPool.take();
+        try {
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                os.write(buf, 0, len);
+            }
+        } finally {
+            BufferPool.release(buf);
+            is.close();
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Content compiled from template. Template literals are encoded to bytes
+ * once and only placeholder values are resolved and encoded per request.
+ * Segments are written directly to output, so whole content is never
+ * created as one string.
+ *
+ * Template used without request (length() and write(os)) is resolved
+ * against empty request, so all placeholders are empty.
+ * @author antons
+ */
+public class TemplateContent implements Content {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[][] literals;
+    private final Function<HttpServletRequest, String>[] slots;
+    private final Charset charset;
+    private final boolean body;
+    private final Resolved empty;
+
+    private TemplateContent(byte[][] literals, Function<HttpServletRequest, String>[] slots, Charset charset, boolean body) {
+        this.literals = literals;
+        this.slots = slots;
+        this.charset = charset;
+        this.body = body;
+        this.empty = resolved(null);
+    }
+
+    /**
+     * Compiled template.
+     * @param literals encoded literals (there is one literal more than slots)
+     * @param slots placeholder value resolvers placed between literals
+     * @param encoding encoding of placeholder values
+     * @param body true if some slot reads request content
+     * @return content
+     */
+    public static TemplateContent instance(List<byte[]> literals, List<Function<HttpServletRequest, String>> slots, String encoding, boolean body) {
+        if(literals.size() != slots.size() + 1) throw new IllegalArgumentException("template must have one literal more than slots");
+        return new TemplateContent(literals.toArray(new byte[literals.size()][])
+            , slots.toArray(new Function[slots.size()])
+            , Charset.forName(encoding)
+            , body);
+    }
+
+    public int slots() { return slots.length; }
+
+    @Override
+    public boolean usesRequestBody() {
+        return body;
+    }
+
+    /**
+     * Length of template resolved against empty request.
+     */
+    @Override
+    public long length() {
+        return empty.length();
+    }
+
+    /**
+     * Writes template resolved against empty request.
+     * Use resolve(request) for request values.
+     */
+    @Override
+    public void write(OutputStream os) throws IOException {
+        empty.write(os);
+    }
+
+    @Override
+    public Content resolve(HttpServletRequest request) {
+        return (request == null) ? empty : resolved(request);
+    }
+
+    // null request resolves all placeholders as empty
+    private Resolved resolved(HttpServletRequest request) {
+        byte[][] parts = new byte[literals.length + slots.length][];
+        long length = 0;
+        for(int i = 0; i < literals.length; i++) {
+            parts[2 * i] = literals[i];
+            length = length + literals[i].length;
+            if(i < slots.length) {
+                String value = (request == null) ? null : slots[i].apply(request);
+                byte[] data = (value == null) ? EMPTY : value.getBytes(charset);
+                parts[2 * i + 1] = data;
+                length = length + data.length;
+            }
+        }
+        return new Resolved(parts, length);
+    }
+
+    /**
+     * Template with resolved placeholders. It is list of byte segments.
+     */
+    private static class Resolved implements Content {
+        private final byte[][] parts;
+        private final long length;
+
+        private Resolved(byte[][] parts, long length) {
+            this.parts = parts;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void write(OutputStream os) throws IOException {
+            for(byte[] part : parts) {
+                if(part.length > 0) os.write(part);
+            }
+        }
+
+        @Override
+        public boolean isRangeable() {
+            return true;
+        }
+
+        @Override
+        public void write(OutputStream os, long position, long count) throws IOException {
+            long offset = 0;
+            for(byte[] part : parts) {
+                if(count <= 0) return;
+                long end = offset + part.length;
+                if(position < end) {
+                    int from = (int)(position - offset);
+                    int len = (int)Math.min(part.length - from, count);
+                    os.write(part, from, len);
+                    position = position + len;
+                    count = count - len;
+                }
+                offset = end;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.security.MessageDigest;
+
+/**
+ * Helper for response validators (ETag and Last-Modified) and
+ * conditional request headers.
+ * @author antons
+ */
+class Validators {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Strong entity tag computed as content hash.
+     * @param data content
+     * @return quoted entity tag
+     */
+    public static String etag(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(34);
+            sb.append('"');
+            for(int i = 0; i < 16; i++) {
+                sb.append(HEX[(hash[i] >> 4) & 0xf]).append(HEX[hash[i] & 0xf]);
+            }
+            sb.append('"');
+            return sb.toString();
+        } catch(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Entity tag computed from file size and modification time.
+     * @param length file size
+     * @param modified file modification time
+     * @return quoted entity tag
+     */
+    public static String etag(long length, long modified) {
+        return '"' + Long.toHexString(length) + '-' + Long.toHexString(modified) + '"';
+    }
+
+    /**
+     * Checks If-None-Match and If-Modified-Since request headers.
+     * @param request request
+     * @param etag response entity tag (can be null)
+     * @param modified response modification time (negative if unknown)
+     * @return true if client has actual content
+     */
+    public static boolean notModified(HttpServletRequest request, String etag, long modified) {
+        String method = request.getMethod();
+        if(!("GET".equals(method) || "HEAD".equals(method))) return false;
+        String match = request.getHeader("If-None-Match");
+        if(match != null) return (etag != null) && matches(match, etag);
+        if(modified < 0) return false;
+        long since;
+        try {
+            since = request.getDateHeader("If-Modified-Since");
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+        return (since >= 0) && (modified / 1000 <= since / 1000);
+    }
+
+    // list of entity tags (weak comparison as required for If-None-Match)
+    static boolean matches(String header, String etag) {
+        if(etag.startsWith("W/")) etag = etag.substring(2);
+        for(String item : header.split(",")) {
+            item = item.trim();
+            if("*".equals(item)) return true;
+            if(item.startsWith("W/")) item = item.substring(2);
+            if(item.equals(etag)) return true;
+        }
+        return false;
+    }
+
+}
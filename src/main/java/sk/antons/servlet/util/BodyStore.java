@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.util;
+
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import jakarta.servlet.ServletRequest;
+
+/**
+ * Request content store. Raw content bytes are read from request only
+ * once and both byte and character access is served from them. Characters
+ * are decoded by request character encoding lazily and for content stored
+ * in memory only once.
+ * @author antons
+ */
+public class BodyStore {
+
+    /** encoding used if request doesn't define one (servlet default) */
+    public static final String DEFAULT_ENCODING = "ISO-8859-1";
+
+    private final ServletRequest request;
+    private final long threshold;
+    private InputStreamReplicator bytes = null;
+    private char[] chars = null;
+    private int charsLength = 0;
+    private String charsEncoding = null;
+
+    public BodyStore(ServletRequest request, long threshold) {
+        this.request = request;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Store of request content.
+     * @param request request
+     * @param threshold max size of content kept in memory
+     * @return store
+     */
+    public static BodyStore instance(ServletRequest request, long threshold) { return new BodyStore(request, threshold); }
+
+    /**
+     * New stream with whole request content.
+     * @return stream
+     * @throws IOException
+     */
+    public InputStream inputStream() throws IOException {
+        return bytes().getInputStream();
+    }
+
+    /**
+     * New reader with whole request content decoded by request character encoding.
+     * @return reader
+     * @throws IOException
+     */
+    public Reader reader() throws IOException {
+        String encoding = request.getCharacterEncoding();
+        if(encoding == null) encoding = DEFAULT_ENCODING;
+        InputStreamReplicator replicator = bytes();
+        if((chars == null) || !encoding.equals(charsEncoding)) {
+            ByteBuffer data = replicator.buffer();
+            // content in temporary file is decoded by each read
+            if(data == null) return new BufferedReader(new InputStreamReader(replicator.getInputStream(), encoding));
+            CharBuffer decoded = Charset.forName(encoding).decode(data);
+            chars = decoded.array();
+            charsLength = decoded.limit();
+            charsEncoding = encoding;
+        }
+        return new CharArrayReader(chars, 0, charsLength);
+    }
+
+    /**
+     * Content length.
+     * @return number of bytes
+     * @throws IOException
+     */
+    public long length() throws IOException {
+        return bytes().length();
+    }
+
+    /**
+     * Releases stored content (deletes temporary file if content was stored in it).
+     */
+    public void release() {
+        if(bytes != null) bytes.release();
+        chars = null;
+        charsLength = 0;
+    }
+
+    private InputStreamReplicator bytes() throws IOException {
+        if(bytes == null) bytes = InputStreamReplicator.instance(request.getInputStream(), request.getContentLengthLong(), threshold);
+        return bytes;
+    }
+
+}
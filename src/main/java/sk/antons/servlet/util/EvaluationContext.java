@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.util;
+
+import jakarta.servlet.ServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Per request cache of values resolved from request. It is created once
+ * per request and attached to request as attribute (and to request wrapper
+ * if request is wrapped), so values like headers or parsed content are
+ * computed only once even if many conditions use them.
+ * It is not thread safe - it is expected to be used by request thread only.
+ * @author antons
+ */
+public class EvaluationContext {
+    private static final Object NULL = new Object();
+    /**
+     * Name of request attribute with attached context.
+     */
+    public static final String ATTRIBUTE = EvaluationContext.class.getName();
+
+    private Map<Object, Object> values = null;
+
+    public static EvaluationContext instance() { return new EvaluationContext(); }
+
+    /**
+     * Creates new context and attaches it to request.
+     * @param request
+     * @return attached context
+     */
+    public static EvaluationContext attach(ServletRequest request) {
+        EvaluationContext context = new EvaluationContext();
+        request.setAttribute(ATTRIBUTE, context);
+        return context;
+    }
+
+    /**
+     * Context attached to given request.
+     * @param request
+     * @return context or null if no context is attached
+     */
+    public static EvaluationContext of(ServletRequest request) {
+        if(request instanceof ServletRequestWrapper) {
+            EvaluationContext context = ((ServletRequestWrapper)request).context();
+            if(context != null) return context;
+        }
+        Object context = request.getAttribute(ATTRIBUTE);
+        return (context instanceof EvaluationContext) ? (EvaluationContext)context : null;
+    }
+
+    /**
+     * Returns value stored for given key. If there is no such value it is
+     * computed by resolver and stored.
+     * @param key identity of resolved value
+     * @param resolver value resolver
+     * @param param resolver parameter
+     * @return resolved value
+     */
+    public <T, V> V value(Object key, Function<T, V> resolver, T param) {
+        if(values == null) values = new HashMap<>();
+        Object value = values.get(key);
+        if(value == null) {
+            value = resolver.apply(param);
+            values.put(key, (value == null) ? NULL : value);
+        }
+        return (value == NULL) ? null : (V)value;
+    }
+
+}
@@ -41,6 +41,11 @@ public class HttpServletRequestWrapper extends ServletRequestWrapper implements
         this.request = request;
     }
 
+    public HttpServletRequestWrapper(HttpServletRequest request, EvaluationContext context) {
+        super(request, context);
+        this.request = request;
+    }
+
     @Override
     public String getAuthType() {
         return request.getAuthType();
@@ -15,23 +15,56 @@
  */
 package sk.antons.servlet.util;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Helper class for wrapping InputStream instances. It enable
  * to read request content two more than once.
+ *
+ * Content is stored in memory up to threshold. Bigger content is stored
+ * in temporary file, which is deleted by release().
  * @author antons
  */
 public class InputStreamReplicator {
+
+    /** default max size of content stored in memory (16MB) */
+    public static final long DEFAULT_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     private InputStream is;
+    private final long lengthHint;
+    private final long threshold;
 
-    public InputStreamReplicator(InputStream is) { this.is = is; }
+    public InputStreamReplicator(InputStream is) { this(is, -1, DEFAULT_THRESHOLD); }
+    public InputStreamReplicator(InputStream is, long lengthHint, long threshold) {
+        this.is = is;
+        this.lengthHint = lengthHint;
+        this.threshold = threshold;
+    }
 
     public static InputStreamReplicator instance(InputStream is) { return new InputStreamReplicator(is); }
+    /**
+     * Replicator for stream.
+     * @param is source stream
+     * @param lengthHint expected content length (like Content-Length header) or -1 if unknown
+     * @param threshold max size of content stored in memory
+     * @return replicator
+     */
+    public static InputStreamReplicator instance(InputStream is, long lengthHint, long threshold) { return new InputStreamReplicator(is, lengthHint, threshold); }
 
     private byte[] cache = null;
+    private int size = 0;
+    private File file = null;
 
     /**
      * Returns InputStream with exact content as InputStream which creates
@@ -40,21 +73,109 @@ public class InputStreamReplicator {
      */
     public InputStream getInputStream() {
         if(is == null) return null;
-        if(cache == null) {
+        if((cache == null) && (file == null)) {
             try {
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                int num;
-                byte[] data = new byte[1024];
-                while ((num = is.read(data, 0, data.length)) != -1) {
-                    buffer.write(data, 0, num);
-                }
-                buffer.flush();
-                cache = buffer.toByteArray();
+                read();
+            } catch(Exception e) {
+                release();
+                throw new IllegalArgumentException(e);
+            }
+        }
+        if(file != null) {
+            try {
+                return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
             } catch(Exception e) {
                 throw new IllegalArgumentException(e);
             }
         }
-        return new ByteArrayInputStream(cache);
+        return new ByteArrayInputStream(cache, 0, size);
+    }
+
+    /**
+     * Content stored in memory as read only buffer. (content is read if it was not read yet)
+     * @return buffer or null if content is stored in temporary file
+     */
+    public ByteBuffer buffer() {
+        if(is == null) return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        getInputStream();
+        if(file != null) return null;
+        return ByteBuffer.wrap(cache, 0, size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Content length. (content is read if it was not read yet)
+     * @return number of bytes
+     */
+    public long length() {
+        if(is == null) return 0;
+        getInputStream();
+        return (file != null) ? file.length() : size;
+    }
+
+    /**
+     * Checks if content is stored in temporary file.
+     * @return true if content is stored in file
+     */
+    public boolean isSpilled() { return file != null; }
+
+    /**
+     * Deletes temporary file if content was stored in it.
+     */
+    public void release() {
+        if(file != null) {
+            file.delete();
+            file = null;
+        }
+        cache = null;
+        size = 0;
+    }
+
+    private void read() throws IOException {
+        if(lengthHint > threshold) {
+            cache = new byte[0];
+            spill();
+            return;
+        }
+        cache = new byte[(int)Math.max(0, Math.min(lengthHint > 0 ? lengthHint : BUFFER_SIZE, threshold))];
+        size = 0;
+        while(true) {
+            if(size == cache.length) {
+                // full buffer (presized by length hint) is often whole content,
+                // so it is not grown or spilled before end of stream is checked
+                int next = is.read();
+                if(next < 0) break;
+                if(size >= threshold) {
+                    spill(next);
+                    return;
+                }
+                long newsize = Math.min(Math.max(BUFFER_SIZE, (long)cache.length * 2), threshold);
+                cache = Arrays.copyOf(cache, (int)Math.max(newsize, size + 1));
+                cache[size++] = (byte)next;
+                continue;
+            }
+            int num = is.read(cache, size, cache.length - size);
+            if(num < 0) break;
+            size = size + num;
+        }
+    }
+
+    private void spill() throws IOException {
+        spill(-1);
+    }
 
+    // stores already read content (with next byte if it is read) and rest of stream in temporary file
+    private void spill(int next) throws IOException {
+        file = File.createTempFile("mimic-body", ".tmp");
+        try(OutputStream os = new FileOutputStream(file)) {
+            os.write(cache, 0, size);
+            if(next >= 0) os.write(next);
+            cache = null;
+            size = 0;
+            byte[] data = new byte[BUFFER_SIZE];
+            int num;
+            while ((num = is.read(data, 0, data.length)) != -1) {
+                os.write(data, 0, num);
+            }
+        }
     }
 }
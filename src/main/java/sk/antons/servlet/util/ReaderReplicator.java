@@ -27,7 +27,7 @@ import java.io.Reader;
 public class ReaderReplicator {
     private Reader reader;
 
-    public ReaderReplicator(Reader is) { this.reader = reader; }
+    public ReaderReplicator(Reader reader) { this.reader = reader; }
 
     public static ReaderReplicator instance(Reader reader) { return new ReaderReplicator(reader); }
 
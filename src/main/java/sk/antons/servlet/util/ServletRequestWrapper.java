@@ -21,6 +21,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.RequestDispatcher;
@@ -37,8 +38,36 @@ import jakarta.servlet.ServletResponse;
  */
 public class ServletRequestWrapper implements ServletRequest {
     private ServletRequest request;
-
-    public ServletRequestWrapper(ServletRequest request) { this.request = request; }
+    private EvaluationContext context;
+    private long memoryThreshold = InputStreamReplicator.DEFAULT_THRESHOLD;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    public ServletRequestWrapper(ServletRequest request) { this(request, null); }
+    public ServletRequestWrapper(ServletRequest request, EvaluationContext context) { this.request = request; this.context = context; }
+
+    /**
+     * Per request cache of resolved values.
+     * @return context or null if not defined
+     */
+    public EvaluationContext context() { return context; }
+
+    /**
+     * Max size of content kept in memory. Bigger content is stored
+     * in temporary file until release() is called.
+     * @param value threshold in bytes
+     * @return this
+     */
+    public ServletRequestWrapper memoryThreshold(long value) { this.memoryThreshold = value; return this; }
+
+    /**
+     * Releases stored content (deletes temporary file if content was stored in it).
+     * Only first call releases content, so it can be called from more async
+     * listener events (timeout followed by complete).
+     */
+    public void release() {
+        if(!released.compareAndSet(false, true)) return;
+        if(body != null) body.release();
+    }
 
     @Override
     public Object getAttribute(String string) {
@@ -71,13 +100,15 @@ public class ServletRequestWrapper implements ServletRequest {
     }
 
 
-    private InputStreamReplicator isreplikator = null;
+    private BodyStore body = null;
+    private BodyStore body() {
+        if(body == null) body = BodyStore.instance(request, memoryThreshold);
+        return body;
+    }
+
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        if(isreplikator == null) {
-            isreplikator = InputStreamReplicator.instance(request.getInputStream());
-        }
-        return SimpleServletInputStream.instance(isreplikator.getInputStream());
+        return SimpleServletInputStream.instance(body().inputStream());
     }
 
     @Override
@@ -120,13 +151,9 @@ public class ServletRequestWrapper implements ServletRequest {
         return request.getServerPort();
     }
 
-    private ReaderReplicator rreplikator = null;
     @Override
     public BufferedReader getReader() throws IOException {
-        if(rreplikator == null) {
-            rreplikator = ReaderReplicator.instance(request.getReader());
-        }
-        return new BufferedReader(rreplikator.getReader());
+        return new BufferedReader(body().reader());
     }
 
     @Override
@@ -37,6 +37,21 @@ public class SimpleServletInputStream extends ServletInputStream {
         return is.read();
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return is.read(b, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return is.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
     @Override
     public boolean isFinished() {
         return false;
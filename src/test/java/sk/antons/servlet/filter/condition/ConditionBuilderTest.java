@@ -20,8 +20,12 @@ import sk.antons.servlet.mimic.condition.ConditionBuilder;
 import sk.antons.servlet.mimic.condition.StringCondition;
 import sk.antons.servlet.mimic.condition.NamedCondition;
 import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.mimic.condition.AndCondition;
+import sk.antons.servlet.mimic.condition.ConstCondition;
+import sk.antons.servlet.mimic.condition.Costed;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -69,4 +73,40 @@ public class ConditionBuilderTest {
         Assert.assertEquals(3, order.get(2).intValue());
     }
 
+    private static class OrderedResolver implements Function<String, String>, Costed {
+        int cost;
+        List<Integer> order;
+        public OrderedResolver(int cost, List<Integer> order) { this.cost = cost; this.order = order; }
+        @Override
+        public String apply(String t) { order.add(cost); return t; }
+        @Override
+        public int cost() { return cost; }
+    }
+
+    @Test
+	public void compileTest() throws Exception {
+        final List<Integer> order = new ArrayList<>();
+        Condition<String> conditon = ConditionBuilder.instance(String.class)
+            .add(StringCondition.instance(StringCondition.Operation.EXISTS, null, new OrderedResolver(20, order)))
+            .and().add(StringCondition.instance(StringCondition.Operation.EXISTS, null, new OrderedResolver(1, order)))
+            .and().lb()
+                .add(StringCondition.instance(StringCondition.Operation.EXISTS, null, new OrderedResolver(10, order)))
+                .and().add(StringCondition.instance(StringCondition.Operation.EXISTS, null, new OrderedResolver(2, order)))
+            .rb()
+            .and().not().not().add(ConstCondition.instance(true))
+            .condition();
+        System.out.println(" compiletest: " + conditon);
+        Assert.assertTrue(conditon instanceof AndCondition);
+        Assert.assertEquals(4, ((AndCondition)conditon).conditions().size());
+        Assert.assertTrue(conditon.check("pokuspokus"));
+        Assert.assertEquals("[1, 2, 10, 20]", order.toString());
+
+        Condition<String> never = ConditionBuilder.instance(String.class)
+            .add(StringCondition.instance(StringCondition.Operation.EXISTS, null, new OrderedResolver(20, order)))
+            .and().not().add(ConstCondition.instance(true))
+            .condition();
+        Assert.assertTrue(never instanceof ConstCondition);
+        Assert.assertFalse(never.check("pokus"));
+    }
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class LiteralMatcherTest {
+
+    private static String matches(String value, String... literals) {
+        BitSet rv = LiteralMatcher.instance(Arrays.asList(literals)).matches(value);
+        return rv.toString();
+    }
+
+    @Test
+	public void overlappingTest() throws Exception {
+        Assert.assertEquals("{0, 1, 3}", matches("ushers", "he", "she", "his", "hers"));
+        Assert.assertEquals("{0, 1, 2}", matches("aaaa", "a", "aa", "aaa", "aaaaa"));
+        Assert.assertEquals("{}", matches("xyz", "he", "she"));
+        Assert.assertEquals("{0, 1}", matches("abab", "ab", "ab"));
+    }
+
+    @Test
+	public void emptyLiteralTest() throws Exception {
+        Assert.assertEquals("{0}", matches("", "", "a"));
+        Assert.assertEquals("{0, 1}", matches("xa", "", "a"));
+    }
+
+    @Test
+	public void failureLinkTest() throws Exception {
+        // 'x' is not after "abc", so matching continues from "bc"
+        Assert.assertEquals("{1}", matches("abcx", "abcd", "bcx"));
+        Assert.assertEquals("{0, 1}", matches("abcxabcd", "abcd", "bcx"));
+        // output of suffix node is reported by longer node
+        Assert.assertEquals("{0, 1}", matches("xbcd", "bcd", "cd"));
+        Assert.assertEquals("{1}", matches("aab", "aaa", "ab"));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.servlet.mimic.builder.RequestConditionBuilder;
+import sk.antons.servlet.mimic.condition.Condition;
+import sk.antons.servlet.util.EvaluationContext;
+import sk.antons.servlet.util.HttpServletRequestWrapper;
+
+/**
+ *
+ * @author antons
+ */
+public class PatternGroupsTest {
+
+    private List<Condition<HttpServletRequest>> conditions = new ArrayList<>();
+
+    private RequestConditionBuilder<PatternGroupsTest> when() {
+        return RequestConditionBuilder.instance("utf-8", this, c -> conditions.add((Condition<HttpServletRequest>)c));
+    }
+
+    private static HttpServletRequest request(String uri) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest)Proxy.newProxyInstance(PatternGroupsTest.class.getClassLoader()
+            , new Class[] {HttpServletRequest.class}
+            , (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "getRequestURI": return uri;
+                    case "getAttribute": return attributes.get((String)args[0]);
+                    case "setAttribute": attributes.put((String)args[0], args[1]); return null;
+                    default: return null;
+                }
+            });
+    }
+
+    private enum Mode { NONE, WRAPPED, ATTACHED }
+
+    private void checkGroups(Mode mode) {
+        when().path().contains("/order").done();
+        when().path().contains("/orders/").and().path().contains("42").done();
+        when().path().contains("der").done();
+        when().path().regexp(".*/[0-9]+").done();
+        when().path().regexp("/rest/.*").or().path().contains("soap").done();
+        when().path().regexp(".*/[0-9]+").and().not().path().regexp("/rest/.*").done();
+        List<Condition<HttpServletRequest>> grouped = PatternGroups.compile(conditions);
+        Assert.assertTrue(grouped.get(0) instanceof PatternGroups.GroupedCondition);
+
+        for(String uri : new String[] {"/rest/orders/42", "/soap/order", "/x/1", "/rest/items", "/", ""}) {
+            HttpServletRequest request = request(uri);
+            if(mode == Mode.WRAPPED) request = new HttpServletRequestWrapper(request, EvaluationContext.instance());
+            if(mode == Mode.ATTACHED) EvaluationContext.attach(request);
+            Assert.assertEquals(mode != Mode.NONE, EvaluationContext.of(request) != null);
+            for(int i = 0; i < conditions.size(); i++) {
+                boolean expected = conditions.get(i).check(request);
+                Assert.assertEquals(uri + " " + conditions.get(i), expected, grouped.get(i).check(request));
+                // second evaluation uses cached results if context exists
+                Assert.assertEquals(uri + " " + conditions.get(i), expected, grouped.get(i).check(request));
+            }
+        }
+    }
+
+    @Test
+	public void groupsWithContextTest() throws Exception {
+        checkGroups(Mode.WRAPPED);
+    }
+
+    @Test
+	public void groupsWithAttachedContextTest() throws Exception {
+        checkGroups(Mode.ATTACHED);
+    }
+
+    @Test
+	public void groupsWithoutContextTest() throws Exception {
+        checkGroups(Mode.NONE);
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.servlet.mimic.builder.RequestConditionBuilder;
+import sk.antons.servlet.mimic.condition.Condition;
+
+/**
+ *
+ * @author antons
+ */
+public class SelectorIndexTest {
+
+    private List<MimicSelector> selectors = new ArrayList<>();
+
+    private RequestConditionBuilder<SelectorIndexTest> when() {
+        return RequestConditionBuilder.instance("utf-8", this, c -> selectors.add(MimicSelector.instance().condition((Condition<HttpServletRequest>)c)));
+    }
+
+    @Test
+	public void candidatesTest() throws Exception {
+        when().path().startsWith("/rest/a").done(); // 0
+        when().path().equals("/rest/b").and().method().equals("POST").done(); // 1
+        when().header("SOAPAction").equals("x").done(); // 2
+        when().lb().path().startsWith("/soap/x").or().path().startsWith("/soap/y").rb().and().method().equals("GET").done(); // 3
+        when().not().path().startsWith("/rest").done(); // 4
+        when().path().startsWith("/rest").and().path().equals("/rest/c").done(); // 5
+
+        SelectorIndex index = SelectorIndex.instance(selectors);
+        Assert.assertArrayEquals(new int[] {0, 2, 4}, index.candidates("GET", "/rest/a/1"));
+        Assert.assertArrayEquals(new int[] {1, 2, 4}, index.candidates("POST", "/rest/b"));
+        Assert.assertArrayEquals(new int[] {2, 4}, index.candidates("GET", "/rest/b"));
+        Assert.assertArrayEquals(new int[] {2, 4}, index.candidates("POST", "/rest/b/c"));
+        Assert.assertArrayEquals(new int[] {2, 3, 4}, index.candidates("GET", "/soap/y/z"));
+        Assert.assertArrayEquals(new int[] {2, 4}, index.candidates("POST", "/soap/y/z"));
+        Assert.assertArrayEquals(new int[] {2, 4, 5}, index.candidates("PUT", "/rest/c"));
+        Assert.assertArrayEquals(new int[] {2, 4}, index.candidates("GET", null));
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.StringReader;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.json.parse.JsonParser;
+
+/**
+ *
+ * @author antons
+ */
+public class JsonPathReaderTest {
+
+    private static final String JSON = "{\"x\":{\"deep\":[1,2,{\"q\":3}]},\"a\":[{\"c\":{\"b\":9}},{\"b\":2}],\"h\":{\"type\":\"T\",\"n\":null}}";
+
+    private void check(String... path) {
+        String expected = JsonParser.parse(JSON).find(path).firstLiteral();
+        String value = JsonPathReader.instance(path).firstLiteral(new StringReader(JSON));
+        Assert.assertEquals(expected, value);
+    }
+
+    @Test
+	public void sameAsTreeTest() throws Exception {
+        check("h", "type");
+        check("a", "*", "b");
+        check("a", "1", "b");
+        check("x", "deep", "2", "q");
+        check("*", "type");
+        check("h");
+        check("h", "n");
+        check("unknown");
+    }
+
+    @Test
+	public void stopsOnFirstTest() throws Exception {
+        String value = JsonPathReader.instance("h", "type").firstLiteral(new StringReader("{\"h\":{\"type\":\"T\"}, broken"));
+        Assert.assertEquals("T", value);
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.servlet.mimic.MimicSelector;
+import sk.antons.servlet.mimic.MimicServlet;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+import sk.antons.servlet.mimic.processor.FileContent;
+
+/**
+ *
+ * @author antons
+ */
+public class MimicConfigTest {
+
+    private static final String CONFIG = "{ 'cases': ["
+        + " { 'when': { 'path': { 'startsWith': '/rest/text' }, 'method': 'GET' },"
+        + "   'process': { 'status': 201, 'contentType': 'text/plain', 'headers': { 'X-Mimic': 'text' }, 'content': 'hello' } },"
+        + " { 'when': { 'or': [ { 'path': '/soap/ok' }, { 'header': { 'SOAPAction': { 'contains': 'ok' } } } ], 'not': { 'method': 'DELETE' } },"
+        + "   'process': { 'contentType': 'application/xml', 'content': '<ok/>', 'delay': [10, 100] } }"
+        + "]}";
+
+    private static HttpServletRequest request(String method, String uri, String... headers) {
+        Map<String, String> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for(int i = 0; i < headers.length; i = i + 2) map.put(headers[i], headers[i + 1]);
+        return (HttpServletRequest)Proxy.newProxyInstance(MimicConfigTest.class.getClassLoader()
+            , new Class[] {HttpServletRequest.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "getMethod": return method;
+                    case "getRequestURI": return uri;
+                    case "getHeader": return map.get((String)args[0]);
+                    default: return null;
+                }
+            });
+    }
+
+    private static File write(File file, String json) throws Exception {
+        Files.write(file.toPath(), json.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String content(MimicSelector selector) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ((ContentProcessor)selector.processor()).content().write(os);
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+	public void parseTest() throws Exception {
+        File dir = Files.createTempDirectory("mimic-config").toFile();
+        File file = write(new File(dir, "mimic.json"), CONFIG);
+        try {
+            List<MimicSelector> selectors = MimicConfig.instance(file).selectors();
+            Assert.assertEquals(2, selectors.size());
+
+            MimicSelector text = selectors.get(0);
+            Assert.assertTrue(text.condition().check(request("GET", "/rest/text/1")));
+            Assert.assertFalse(text.condition().check(request("POST", "/rest/text/1")));
+            Assert.assertFalse(text.condition().check(request("GET", "/rest/other")));
+            ContentProcessor processor = (ContentProcessor)text.processor();
+            Assert.assertEquals(201, processor.status());
+            Assert.assertEquals("text/plain", processor.contentType());
+            Assert.assertEquals("X-Mimic", processor.headers().get(0)[0]);
+            Assert.assertEquals("text", processor.headers().get(0)[1]);
+            Assert.assertEquals("hello", content(text));
+
+            MimicSelector soap = selectors.get(1);
+            Assert.assertTrue(soap.condition().check(request("POST", "/soap/ok")));
+            Assert.assertTrue(soap.condition().check(request("POST", "/soap/x", "SOAPAction", "is-ok")));
+            Assert.assertFalse(soap.condition().check(request("POST", "/soap/x", "SOAPAction", "failed")));
+            Assert.assertFalse(soap.condition().check(request("DELETE", "/soap/ok")));
+            processor = (ContentProcessor)soap.processor();
+            Assert.assertEquals(10, processor.delay().p50());
+            Assert.assertEquals(100, processor.delay().p99());
+            Assert.assertEquals("<ok/>", content(soap));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+	public void invalidTest() throws Exception {
+        File dir = Files.createTempDirectory("mimic-config").toFile();
+        File file = new File(dir, "mimic.json");
+        try {
+            write(file, "{ 'cases': [ { 'when': { 'unknown': 'x' }, 'process': { 'content': 'x' } } ] }");
+            MimicConfig.instance(file).selectors();
+            Assert.fail("unknown attribute accepted");
+        } catch(IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("unknown condition attribute"));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+	public void failedReloadTest() throws Exception {
+        File dir = Files.createTempDirectory("mimic-config").toFile();
+        File file = write(new File(dir, "mimic.json"), CONFIG);
+        CountDownLatch failed = new CountDownLatch(1);
+        MimicServlet servlet = MimicServlet.instance();
+        MimicConfig config = MimicConfig.instance(file).delay(20).errorHandler(e -> failed.countDown()).watch(servlet);
+        try {
+            List<MimicSelector> loaded = servlet.selectors();
+            Assert.assertEquals(2, loaded.size());
+
+            write(file, "{ 'cases': [ broken");
+            Assert.assertTrue("reload error not reported", failed.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(loaded, servlet.selectors());
+
+            write(file, "{ 'cases': [ { 'when': { 'any': true }, 'process': { 'content': 'x' } } ] }");
+            long end = System.currentTimeMillis() + 10000;
+            while((servlet.selectors().size() != 1) && (System.currentTimeMillis() < end)) Thread.sleep(20);
+            Assert.assertEquals(1, servlet.selectors().size());
+        } finally {
+            config.close();
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+	public void reloadCloseTest() throws Exception {
+        File dir = Files.createTempDirectory("mimic-config").toFile();
+        File body = new File(dir, "body.txt");
+        Files.write(body.toPath(), "file body".getBytes(StandardCharsets.UTF_8));
+        File file = write(new File(dir, "mimic.json"), "{ 'cases': [ { 'when': { 'any': true }, 'process': { 'contentType': 'text/plain', 'file': 'body.txt' } } ] }");
+        MimicServlet servlet = MimicServlet.instance();
+        MimicConfig config = MimicConfig.instance(file).delay(20).watch(servlet);
+        try {
+            for(int i = 0; i < 3; i++) {
+                MimicSelector loaded = servlet.selectors().get(0);
+                FileContent content = (FileContent)((ContentProcessor)loaded.processor()).content();
+                Assert.assertEquals("file body", content(loaded));
+                Assert.assertTrue(content.isOpen());
+
+                write(file, "{ 'cases': [ { 'when': { 'any': true }, 'process': { 'contentType': 'text/plain', 'file': 'body.txt', 'status': " + (201 + i) + " } } ] }");
+                long end = System.currentTimeMillis() + 10000;
+                while((servlet.selectors().get(0) == loaded) && (System.currentTimeMillis() < end)) Thread.sleep(20);
+                Assert.assertNotSame(loaded, servlet.selectors().get(0));
+                // replaced content is closed after swap
+                end = System.currentTimeMillis() + 1000;
+                while(content.isOpen() && (System.currentTimeMillis() < end)) Thread.sleep(10);
+                Assert.assertFalse(content.isOpen());
+            }
+        } finally {
+            config.close();
+            body.delete();
+            file.delete();
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.servlet.mimic.MimicSelector;
+import sk.antons.servlet.mimic.MimicServlet;
+import sk.antons.servlet.mimic.processor.ContentProcessor;
+
+/**
+ *
+ * @author antons
+ */
+public class MimicSnapshotTest {
+
+    @Test
+	public void roundTripTest() throws Exception {
+        MimicServlet servlet = MimicServlet.builder()
+            .inCase()
+                .when().path().startsWith("/a").and().not().header("X").equals("1").done()
+                .process(MimicServlet.processor().status(201).contentType("text/plain").header("Y", "2").compress().content("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa").build())
+            .inCase()
+                .when().path().regexp("/b/[0-9]+").or().jsonContent("a", "b").exists().done()
+                .process(MimicServlet.processor().contentType("application/json").content("{}").build())
+            .build();
+        File file = File.createTempFile("mimic", ".snap");
+        try {
+            MimicSnapshot.write(servlet, file);
+            List<MimicSelector> selectors = MimicSnapshot.read(file);
+            Assert.assertEquals(2, selectors.size());
+            Assert.assertEquals(servlet.configurationInfo(), MimicServlet.builder().snapshot(file).build().configurationInfo());
+            ContentProcessor original = (ContentProcessor)servlet.selectors().get(0).processor();
+            ContentProcessor restored = (ContentProcessor)selectors.get(0).processor();
+            Assert.assertEquals(201, restored.status());
+            Assert.assertEquals("Y", restored.headers().get(0)[0]);
+            Assert.assertEquals(original.content().etag(), restored.content().etag());
+            Assert.assertArrayEquals(bytes(original.variants().get("gzip").length(), original), bytes(restored.variants().get("gzip").length(), restored));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+	public void sameBodiesTest() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 10000; i++) sb.append((char)('a' + (i * 7) % 26));
+        MimicServlet servlet = MimicServlet.builder()
+            .inCase().when().path().equals("/a").done().process(MimicServlet.processor().contentType("text/plain").content(sb.toString()).build())
+            .inCase().when().path().equals("/b").done().process(MimicServlet.processor().contentType("text/plain").content(sb.toString()).build())
+            .inCase().when().path().equals("/c").done().process(MimicServlet.processor().contentType("text/plain").content("c").build())
+            .build();
+        File file = File.createTempFile("mimic", ".snap");
+        try {
+            MimicSnapshot.write(servlet, file);
+            // same body is stored once
+            Assert.assertTrue(file.length() < 2 * sb.length());
+            List<MimicSelector> selectors = MimicSnapshot.read(file);
+            String[] expected = {sb.toString(), sb.toString(), "c"};
+            for(int i = 0; i < expected.length; i++) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ((ContentProcessor)selectors.get(i).processor()).content().write(bos);
+                Assert.assertEquals(expected[i], bos.toString("utf-8"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] bytes(long length, ContentProcessor processor) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        processor.variants().get("gzip").write(bos);
+        Assert.assertEquals(length, bos.size());
+        return bos.toByteArray();
+    }
+
+}
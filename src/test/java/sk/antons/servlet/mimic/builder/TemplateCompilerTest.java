@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.servlet.mimic.processor.Content;
+import sk.antons.servlet.mimic.processor.TemplateContent;
+
+/**
+ *
+ * @author antons
+ */
+public class TemplateCompilerTest {
+
+    private static Object none(Class<?> type) {
+        if(type == boolean.class) return false;
+        if((type == int.class) || (type == long.class)) return 0;
+        return null;
+    }
+
+    private static HttpServletRequest request(String uri, Map<String, String> params, Map<String, String> headers, String body) {
+        ByteArrayInputStream data = new ByteArrayInputStream(body.getBytes());
+        ServletInputStream is = new ServletInputStream() {
+            @Override
+            public boolean isFinished() { return data.available() == 0; }
+            @Override
+            public boolean isReady() { return true; }
+            @Override
+            public void setReadListener(ReadListener listener) { }
+            @Override
+            public int read() { return data.read(); }
+        };
+        return (HttpServletRequest)Proxy.newProxyInstance(TemplateCompilerTest.class.getClassLoader()
+            , new Class[] {HttpServletRequest.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "getRequestURI": return uri;
+                    case "getParameter": return params.get((String)args[0]);
+                    case "getHeader": return headers.get((String)args[0]);
+                    case "getInputStream": return is;
+                    default: return none(m.getReturnType());
+                }
+            });
+    }
+
+    // checks declared length and returns written content
+    private static String write(Content content) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        content.write(os);
+        Assert.assertEquals(os.size(), content.length());
+        return os.toString("utf-8");
+    }
+
+    @Test
+	public void slotsTest() throws Exception {
+        TemplateContent template = TemplateCompiler.compile("user ${path:1}, q=${param:q}, h=${header:X-Id}, name=${json:user/name}, $${x}", "utf-8");
+        Assert.assertEquals(4, template.slots());
+        Assert.assertTrue(template.usesRequestBody());
+        Map<String, String> params = new HashMap<>();
+        params.put("q", "query");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Id", "123");
+        HttpServletRequest request = request("/users/12", params, headers, "{\"user\": {\"name\": \"Jozko\"}}");
+        Assert.assertEquals("user 12, q=query, h=123, name=Jozko, ${x}", write(template.resolve(request)));
+        Assert.assertEquals("user , q=, h=, name=, ${x}", write(template));
+    }
+
+    @Test
+	public void xmlTest() throws Exception {
+        TemplateContent template = TemplateCompiler.compile("<id>${xml:Envelope/Body/id}</id>", "utf-8");
+        HttpServletRequest request = request("/", new HashMap<>(), new HashMap<>(), "<Envelope><Body><id>7</id></Body></Envelope>");
+        Assert.assertEquals("<id>7</id>", write(template.resolve(request)));
+    }
+
+    @Test
+	public void brokenContentTest() throws Exception {
+        TemplateContent template = TemplateCompiler.compile("[${json:a}][${xml:a}]", "utf-8");
+        HttpServletRequest request = request("/", new HashMap<>(), new HashMap<>(), "not a document");
+        Assert.assertEquals("[][]", write(template.resolve(request)));
+    }
+
+}
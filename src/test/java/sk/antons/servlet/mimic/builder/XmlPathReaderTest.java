@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.builder;
+
+import java.io.StringReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class XmlPathReaderTest {
+
+    private static final String XML = "<s:Envelope xmlns:s=\"urn:soap\" xmlns:o=\"urn:order\">"
+        + "<s:Header><id>header</id></s:Header>"
+        + "<s:Body><o:order o:type=\"express\" status=\"new\"><o:id>42</o:id><id>plain</id></o:order></s:Body>"
+        + "</s:Envelope>";
+
+    private String text(String... path) throws Exception {
+        return XmlPathReader.instance(path).firstText(new StringReader(XML));
+    }
+
+    @Test
+	public void localNameTest() throws Exception {
+        Assert.assertEquals("42", text("Envelope", "Body", "order", "id"));
+        Assert.assertEquals("header", text("Envelope", "Header", "id"));
+        Assert.assertEquals("42", text("*", "Body", "*", "id"));
+        Assert.assertNull(text("Envelope", "Body", "unknown"));
+    }
+
+    @Test
+	public void namespaceTest() throws Exception {
+        Assert.assertEquals("42", text("{urn:soap}Envelope", "{urn:soap}Body", "{urn:order}order", "{urn:order}id"));
+        Assert.assertNull(text("{urn:order}Envelope", "Body", "order", "id"));
+        // empty namespace matches only elements without namespace
+        Assert.assertEquals("plain", text("Envelope", "Body", "order", "{}id"));
+        Assert.assertEquals("header", text("Envelope", "Header", "{}id"));
+        Assert.assertNull(text("{}Envelope", "Body", "order", "id"));
+    }
+
+    @Test
+	public void attributeTest() throws Exception {
+        Assert.assertEquals("new", text("Envelope", "Body", "order", "@status"));
+        Assert.assertEquals("express", text("Envelope", "Body", "order", "@type"));
+        Assert.assertEquals("express", text("Envelope", "Body", "order", "@{urn:order}type"));
+        Assert.assertEquals("new", text("Envelope", "Body", "order", "@{}status"));
+        Assert.assertNull(text("Envelope", "Body", "order", "@{}type"));
+        Assert.assertNull(text("Envelope", "Body", "order", "@unknown"));
+    }
+
+}
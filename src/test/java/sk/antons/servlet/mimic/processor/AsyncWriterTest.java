@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class AsyncWriterTest {
+
+    private static Object none(Class<?> type) {
+        if(type == boolean.class) return false;
+        if((type == int.class) || (type == long.class)) return 0;
+        return null;
+    }
+
+    @Test
+	public void dueTest() throws Exception {
+        Assert.assertEquals(0, AsyncWriter.due(0, 1000));
+        Assert.assertEquals(100000000L, AsyncWriter.due(100, 1000));
+        Assert.assertEquals(333333L, AsyncWriter.due(1, 3000));
+        // written * 10^9 overflows long after ~9.2GB
+        long gb = 1024L * 1024 * 1024;
+        Assert.assertEquals(20000000000L, AsyncWriter.due(20 * gb, gb));
+        Assert.assertEquals(1500000000000L, AsyncWriter.due(1500 * gb, gb));
+        Assert.assertEquals(1000000000L, AsyncWriter.due(Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+	public void pacingTest() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AsyncContext context = (AsyncContext)Proxy.newProxyInstance(AsyncWriterTest.class.getClassLoader()
+            , new Class[] {AsyncContext.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "start": ((Runnable)args[0]).run(); return null;
+                    case "complete": done.countDown(); return null;
+                    default: return none(m.getReturnType());
+                }
+            });
+        HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(AsyncWriterTest.class.getClassLoader()
+            , new Class[] {HttpServletRequest.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "startAsync": return context;
+                    default: return none(m.getReturnType());
+                }
+            });
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ServletOutputStream os = new ServletOutputStream() {
+            @Override
+            public boolean isReady() { return true; }
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                try {
+                    listener.onWritePossible();
+                } catch(IOException e) {
+                    listener.onError(e);
+                }
+            }
+            @Override
+            public void write(int b) { body.write(b); }
+        };
+        HttpServletResponse response = (HttpServletResponse)Proxy.newProxyInstance(AsyncWriterTest.class.getClassLoader()
+            , new Class[] {HttpServletResponse.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "getOutputStream": return os;
+                    default: return none(m.getReturnType());
+                }
+            });
+
+        byte[] data = new byte[300];
+        for(int i = 0; i < data.length; i++) data[i] = (byte)i;
+        Content content = ByteContent.instance(data);
+        long start = System.nanoTime();
+        // 1000 bytes per second written by 100 bytes chunks
+        AsyncWriter.start(request, response, 1000, new AsyncWriter.Segment(content, 0, 200), new AsyncWriter.Segment(content, 200, 100));
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        Assert.assertTrue("elapsed " + elapsed, elapsed >= 200000000L);
+        Assert.assertArrayEquals(data, body.toByteArray());
+    }
+
+}
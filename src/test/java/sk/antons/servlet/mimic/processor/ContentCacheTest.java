@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class ContentCacheTest {
+
+    private static byte[] get(ContentCache cache, String key, int size) {
+        return cache.get(key, null, () -> new ByteArrayInputStream(new byte[size]));
+    }
+
+    @Test
+	public void evictionTest() throws Exception {
+        ContentCache cache = ContentCache.instance(10);
+        get(cache, "a", 4);
+        get(cache, "b", 4);
+        get(cache, "a", 4);
+        get(cache, "c", 4);
+        Assert.assertEquals(2, cache.count());
+        Assert.assertEquals(8, cache.size());
+        int[] loads = new int[1];
+        cache.get("a", null, () -> { loads[0]++; return new ByteArrayInputStream(new byte[4]); });
+        Assert.assertEquals(0, loads[0]);
+        Assert.assertEquals(20, get(cache, "d", 20).length);
+        Assert.assertEquals(2, cache.count());
+    }
+
+    @Test
+	public void singleFlightTest() throws Exception {
+        ContentCache cache = ContentCache.instance(100);
+        AtomicInteger loads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> cache.get("a", null, () -> {
+                loads.incrementAndGet();
+                try {
+                    Thread.sleep(100);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ByteArrayInputStream(new byte[4]);
+            }));
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) thread.join();
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.count());
+    }
+
+    @Test
+	public void snapshotTest() throws Exception {
+        ContentCache cache = ContentCache.instance(10);
+        AtomicInteger loads = new AtomicInteger();
+        CachedContent content = CachedContent.instance(cache, "big", null, () -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream("0123456789abcdef".getBytes());
+        });
+        // content over budget is not stored, but it is loaded once per request
+        Content resolved = content.resolve(null);
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(16, resolved.length());
+        Assert.assertNotNull(resolved.etag());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        resolved.write(os, 2, 3);
+        resolved.write(os, 10, 6);
+        Assert.assertEquals("234abcdef", os.toString());
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(0, cache.count());
+    }
+
+    @Test
+	public void bigFileTest() throws Exception {
+        File file = File.createTempFile("mimic", ".txt");
+        try {
+            Files.write(file.toPath(), "0123456789abcdef".getBytes());
+            ContentCache cache = ContentCache.instance(10);
+            AtomicInteger loads = new AtomicInteger();
+            CachedContent content = CachedContent.instance(cache, "file", file, () -> {
+                loads.incrementAndGet();
+                return new ByteArrayInputStream(new byte[0]);
+            });
+            // file over budget is streamed from file, it is not read to memory
+            Content resolved = content.resolve(null);
+            Assert.assertEquals(16, resolved.length());
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            resolved.write(os, 10, 6);
+            Assert.assertEquals("abcdef", os.toString());
+            Assert.assertNull(content.encoded(Compression.GZIP).resolve(null));
+            Assert.assertEquals(0, loads.get());
+            content.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+	public void encodedTest() throws Exception {
+        ContentCache cache = ContentCache.instance(1000);
+        byte[] random = new byte[100];
+        new Random(1).nextBytes(random);
+        CachedContent incompressible = CachedContent.instance(cache, "random", null, () -> new ByteArrayInputStream(random));
+        Assert.assertNull(incompressible.encoded(Compression.GZIP).resolve(null));
+        CachedContent text = CachedContent.instance(cache, "text", null, () -> new ByteArrayInputStream(new byte[100]));
+        Content encoded = text.encoded(Compression.GZIP).resolve(null);
+        Assert.assertNotNull(encoded);
+        Assert.assertTrue(encoded.length() < 100);
+    }
+
+}
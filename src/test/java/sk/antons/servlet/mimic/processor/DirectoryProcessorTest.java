@@ -0,0 +1,201 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.function.BooleanSupplier;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class DirectoryProcessorTest {
+
+    private static Object none(Class<?> type) {
+        if(type == boolean.class) return false;
+        if((type == int.class) || (type == long.class)) return 0;
+        return null;
+    }
+
+    private static HttpServletRequest request(String method, String uri, String accept) {
+        return (HttpServletRequest)Proxy.newProxyInstance(DirectoryProcessorTest.class.getClassLoader()
+            , new Class[] {HttpServletRequest.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "getMethod": return method;
+                    case "getRequestURI": return uri;
+                    case "getHeader": return "Accept".equals(args[0]) ? accept : null;
+                    case "getDateHeader": return -1L;
+                    default: return none(m.getReturnType());
+                }
+            });
+    }
+
+    // returns content type and body of response or null if request is not processed
+    private static String process(DirectoryProcessor processor, String method, String uri, String accept) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ServletOutputStream os = new ServletOutputStream() {
+            @Override
+            public boolean isReady() { return true; }
+            @Override
+            public void setWriteListener(WriteListener listener) { }
+            @Override
+            public void write(int b) { body.write(b); }
+        };
+        String[] type = new String[1];
+        HttpServletResponse response = (HttpServletResponse)Proxy.newProxyInstance(DirectoryProcessorTest.class.getClassLoader()
+            , new Class[] {HttpServletResponse.class}
+            , (proxy, m, args) -> {
+                switch(m.getName()) {
+                    case "getOutputStream": return os;
+                    case "setContentType": type[0] = (String)args[0]; return null;
+                    default: return none(m.getReturnType());
+                }
+            });
+        if(!processor.test(request(method, uri, accept), response)) return null;
+        return type[0] + " " + body.toString();
+    }
+
+    private static void write(File root, String path, String content) throws Exception {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("utf-8"));
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if(files != null) for(File f : files) delete(f);
+        file.delete();
+    }
+
+    // deleted file can be requested before index is updated
+    private static boolean check(BooleanSupplier condition) {
+        try {
+            return condition.getAsBoolean();
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) throws Exception {
+        long end = System.currentTimeMillis() + 10000;
+        while(!check(condition) && (System.currentTimeMillis() < end)) Thread.sleep(20);
+        return check(condition);
+    }
+
+    private static File tree() throws Exception {
+        File root = Files.createTempDirectory("mimic-dir").toFile();
+        write(root, "index.html", "root");
+        write(root, "users/12.json", "{}");
+        write(root, "users/12.xml", "<user/>");
+        write(root, "users/12.DELETE.json", "deleted");
+        write(root, "orders/index.xml", "<orders/>");
+        write(root, "files/a b.txt", "space");
+        return root;
+    }
+
+    @Test
+	public void indexTest() throws Exception {
+        File root = tree();
+        DirectoryProcessor processor = DirectoryProcessor.instance(root).prefix("/api").scan();
+        try {
+            Assert.assertEquals(4, processor.size());
+            Assert.assertEquals("text/html root", process(processor, "GET", "/api", null));
+            Assert.assertEquals("text/html root", process(processor, "GET", "/api/", null));
+            Assert.assertEquals("application/xml <orders/>", process(processor, "GET", "/api/orders/", null));
+            Assert.assertEquals("text/plain space", process(processor, "GET", "/api/files/a%20b", null));
+            Assert.assertNull(process(processor, "GET", "/api/files/a+b", null));
+            Assert.assertNull(process(processor, "GET", "/api/unknown", null));
+            Assert.assertNull(process(processor, "GET", "/other/users/12", null));
+        } finally {
+            processor.close();
+            delete(root);
+        }
+    }
+
+    @Test
+	public void variantTest() throws Exception {
+        File root = tree();
+        DirectoryProcessor processor = DirectoryProcessor.instance(root).scan();
+        try {
+            Assert.assertEquals("application/json {}", process(processor, "GET", "/users/12", null));
+            Assert.assertEquals("application/xml <user/>", process(processor, "GET", "/users/12", "application/xml"));
+            Assert.assertEquals("application/json {}", process(processor, "GET", "/users/12", "text/html;q=0.9, application/json"));
+            Assert.assertEquals("application/xml <user/>", process(processor, "GET", "/users/12", "application/json;q=0.5, application/xml"));
+            Assert.assertEquals("application/json deleted", process(processor, "DELETE", "/users/12", null));
+            Assert.assertEquals("application/json {}", process(processor, "PUT", "/users/12", null));
+        } finally {
+            processor.close();
+            delete(root);
+        }
+    }
+
+    @Test
+	public void extensionTest() throws Exception {
+        File root = tree();
+        write(root, "static/app.js", "run()");
+        DirectoryProcessor processor = DirectoryProcessor.instance(root).scan();
+        try {
+            Assert.assertEquals("application/json {}", process(processor, "GET", "/users/12.json", null));
+            Assert.assertEquals("application/json {}", process(processor, "GET", "/users/12.json", "application/xml"));
+            Assert.assertEquals("application/xml <user/>", process(processor, "GET", "/users/12.xml", "application/json"));
+            Assert.assertEquals("application/json deleted", process(processor, "DELETE", "/users/12.json", null));
+            Assert.assertNull(process(processor, "DELETE", "/users/12.xml", null));
+            Assert.assertNull(process(processor, "GET", "/users/12.txt", null));
+            Assert.assertEquals("application/javascript run()", process(processor, "GET", "/static/app.js", null));
+            Assert.assertEquals("text/html root", process(processor, "GET", "/index.html", null));
+            Assert.assertNull(process(processor, "GET", "/users/.json", null));
+        } finally {
+            processor.close();
+            delete(root);
+        }
+    }
+
+    @Test
+	public void watchTest() throws Exception {
+        File root = tree();
+        DirectoryProcessor processor = DirectoryProcessor.instance(root).watch();
+        try {
+            Assert.assertEquals("application/json {}", process(processor, "GET", "/users/12", null));
+            write(root, "users/13.json", "new");
+            Assert.assertTrue(await(() -> process(processor, "GET", "/users/13", null) != null));
+            Assert.assertEquals("application/json new", process(processor, "GET", "/users/13", null));
+
+            write(root, "items/1.txt", "item");
+            Assert.assertTrue(await(() -> process(processor, "GET", "/items/1", null) != null));
+
+            new File(root, "users/12.json").delete();
+            Assert.assertTrue(await(() -> "application/xml <user/>".equals(process(processor, "GET", "/users/12", null))));
+
+            delete(new File(root, "users"));
+            Assert.assertTrue(await(() -> process(processor, "GET", "/users/13", null) == null));
+            Assert.assertEquals("text/plain item", process(processor, "GET", "/items/1", null));
+        } finally {
+            processor.close();
+            delete(root);
+        }
+    }
+
+}
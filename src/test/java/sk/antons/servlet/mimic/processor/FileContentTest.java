@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class FileContentTest {
+
+    private static String read(FileContent content) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        content.write(os);
+        return os.toString("utf-8");
+    }
+
+    @Test
+	public void changeTest() throws Exception {
+        File file = File.createTempFile("mimic", ".txt");
+        try {
+            FileContent content = FileContent.instance(file);
+            Files.write(file.toPath(), "first".getBytes("utf-8"));
+            Assert.assertEquals("first", read(content));
+            Files.write(file.toPath(), "second one".getBytes("utf-8"));
+            Assert.assertEquals("second one", read(content));
+            content.close();
+            // closed content opens channel again
+            Assert.assertEquals("second one", read(content));
+            content.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String read(Content content) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        content.write(os);
+        return os.toString("utf-8");
+    }
+
+    @Test
+	public void resolveTest() throws Exception {
+        File file = File.createTempFile("mimic", ".txt");
+        try {
+            Files.write(file.toPath(), "first".getBytes("utf-8"));
+            file.setLastModified(1000000000000L);
+            FileContent content = FileContent.instance(file);
+            Content view = content.resolve(null);
+            Assert.assertEquals(5, view.length());
+            Assert.assertEquals(1000000000000L, view.lastModified());
+            String etag = view.etag();
+            // closed channel is opened again for same version of file
+            content.close();
+            Assert.assertEquals("first", read(view));
+            Files.write(file.toPath(), "second one".getBytes("utf-8"));
+            file.setLastModified(1000000005000L);
+            Assert.assertEquals(10, content.length());
+            // resolved content keeps values of bound version
+            Assert.assertEquals(5, view.length());
+            Assert.assertEquals(1000000000000L, view.lastModified());
+            Assert.assertEquals(etag, view.etag());
+            Content current = content.resolve(null);
+            Assert.assertEquals(10, current.length());
+            Assert.assertNotEquals(etag, current.etag());
+            Assert.assertEquals("second one", read(current));
+            try {
+                read(view);
+                Assert.fail("changed file is written as bound version");
+            } catch(IOException e) {
+                // expected
+            }
+            content.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+	public void concurrentChangeTest() throws Exception {
+        File file = File.createTempFile("mimic", ".txt");
+        try {
+            Files.write(file.toPath(), new byte[1000]);
+            FileContent content = FileContent.instance(file);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for(int i = 0; i < 4; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        for(int j = 0; j < 300; j++) content.write(new ByteArrayOutputStream());
+                    } catch(Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                });
+                readers.add(thread);
+                thread.start();
+            }
+            // each change replaces channel while readers use previous one
+            for(int i = 0; i < 100; i++) Files.write(file.toPath(), new byte[1000 + i]);
+            for(Thread thread : readers) thread.join();
+            if(error.get() != null) throw new AssertionError(error.get());
+            content.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class GeneratedContentTest {
+
+    private static byte[] write(Content content, long position, long count) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        content.write(os, position, count);
+        return os.toByteArray();
+    }
+
+    private static void checkParts(Content content) throws Exception {
+        byte[] whole = write(content, 0, content.length());
+        Assert.assertEquals(content.length(), whole.length);
+        for(long position : new long[] {0, 1, 7, 13, 100, whole.length - 5}) {
+            if(position + 5 > whole.length) continue;
+            byte[] part = write(content, position, 5);
+            Assert.assertArrayEquals(Arrays.copyOfRange(whole, (int)position, (int)position + 5), part);
+        }
+    }
+
+    @Test
+	public void jsonTest() throws Exception {
+        GeneratedContent content = GeneratedContent.jsonArray(3, 4, 1);
+        String json = new String(write(content, 0, content.length()), "utf-8");
+        Assert.assertTrue(json, json.matches("\\[\\{\"id\":\"0\",\"value\":\"\\w{4}\"\\},\\{\"id\":\"1\",\"value\":\"\\w{4}\"\\},\\{\"id\":\"2\",\"value\":\"\\w{4}\"\\}\\]"));
+        checkParts(GeneratedContent.jsonArray(50, 10, 1));
+    }
+
+    @Test
+	public void csvTest() throws Exception {
+        GeneratedContent content = GeneratedContent.csv(12, 3, 1);
+        String csv = new String(write(content, 0, content.length()), "utf-8");
+        Assert.assertTrue(csv, csv.startsWith("id,value\n00,"));
+        Assert.assertTrue(csv, csv.endsWith("\n"));
+        Assert.assertEquals(14, csv.split("\n", -1).length);
+        checkParts(content);
+        Assert.assertEquals("id,value\n", new String(write(GeneratedContent.csv(0, 3, 1), 0, 9), "utf-8"));
+        Assert.assertEquals(9, GeneratedContent.csv(0, 3, 1).length());
+        Assert.assertEquals("[]", new String(write(GeneratedContent.jsonArray(0, 3, 1), 0, 2), "utf-8"));
+    }
+
+    @Test
+	public void bytesTest() throws Exception {
+        checkParts(GeneratedContent.bytes(50000, 7));
+        Assert.assertArrayEquals(write(GeneratedContent.bytes(100, 7), 0, 100), write(GeneratedContent.bytes(100, 7), 0, 100));
+        Assert.assertFalse(Arrays.equals(write(GeneratedContent.bytes(100, 7), 0, 100), write(GeneratedContent.bytes(100, 8), 0, 100)));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class LazyContentTest {
+
+    @Test
+	public void singleFlightTest() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LazyContent content = LazyContent.instance(() -> {
+            loads.incrementAndGet();
+            try { Thread.sleep(100); } catch(InterruptedException e) { }
+            return ByteContent.instance(new byte[10]);
+        }, false, true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> lengths = new ArrayList<>();
+            for(int i = 0; i < 8; i++) lengths.add(executor.submit(() -> content.length()));
+            for(Future<Long> length : lengths) Assert.assertEquals(10L, (long)length.get());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertTrue(content.isLoaded());
+    }
+
+    @Test
+	public void retryTest() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LazyContent content = LazyContent.instance(() -> {
+            if(loads.incrementAndGet() == 1) throw new IllegalStateException("not yet");
+            return ByteContent.instance(new byte[3]);
+        }, false, true);
+        try {
+            content.length();
+            Assert.fail();
+        } catch(IllegalStateException e) {
+            Assert.assertEquals("not yet", e.getMessage());
+        }
+        Assert.assertEquals(3, content.length());
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+	public void encodedTest() throws Exception {
+        byte[] random = new byte[100];
+        new Random(1).nextBytes(random);
+        LazyContent incompressible = LazyContent.instance(() -> ByteContent.instance(random), false, true);
+        Assert.assertNull(incompressible.encoded(Compression.GZIP).resolve(null));
+        LazyContent text = LazyContent.instance(() -> ByteContent.instance(new byte[100]), false, true);
+        Content encoded = text.encoded(Compression.GZIP).resolve(null);
+        Assert.assertNotNull(encoded);
+        Assert.assertTrue(encoded.length() < 100);
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.mimic.processor;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class RangesTest {
+
+    private static String parse(String header) {
+        long[][] ranges = Ranges.parse(header, 10);
+        return (ranges == null) ? null : Arrays.deepToString(ranges);
+    }
+
+    @Test
+	public void parseTest() throws Exception {
+        Assert.assertEquals("[[2, 4]]", parse("bytes=2-4"));
+        Assert.assertEquals("[[7, 9]]", parse("bytes=-3"));
+        Assert.assertEquals("[[0, 9]]", parse("bytes=-30"));
+        Assert.assertEquals("[[8, 9]]", parse("bytes=8-"));
+        Assert.assertEquals("[[5, 9]]", parse("bytes=5-100"));
+        Assert.assertEquals("[[0, 1], [5, 6]]", parse("bytes=0-1, 5-6"));
+        Assert.assertEquals("[]", parse("bytes=10-12"));
+        Assert.assertNull(parse("bytes=5-2"));
+        Assert.assertNull(parse("items=0-1"));
+        Assert.assertNull(parse("bytes=a-1"));
+    }
+
+}
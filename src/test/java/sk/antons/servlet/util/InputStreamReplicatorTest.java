@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.servlet.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class InputStreamReplicatorTest {
+
+    private static byte[] data(int length) {
+        byte[] rv = new byte[length];
+        for(int i = 0; i < length; i++) rv[i] = (byte)i;
+        return rv;
+    }
+
+    private static byte[] read(InputStreamReplicator replicator) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try(InputStream is = replicator.getInputStream()) {
+            byte[] buf = new byte[1000];
+            int num;
+            while((num = is.read(buf)) != -1) os.write(buf, 0, num);
+        }
+        return os.toByteArray();
+    }
+
+    @Test
+	public void exactLengthTest() throws Exception {
+        byte[] data = data(100000);
+        InputStreamReplicator replicator = InputStreamReplicator.instance(new ByteArrayInputStream(data), data.length, 1000000);
+        ByteBuffer buffer = replicator.buffer();
+        Assert.assertFalse(replicator.isSpilled());
+        // presized buffer is not grown
+        Assert.assertEquals(data.length, buffer.capacity());
+        Assert.assertEquals(data.length, buffer.remaining());
+        Assert.assertArrayEquals(data, read(replicator));
+        replicator.release();
+    }
+
+    @Test
+	public void exactThresholdTest() throws Exception {
+        byte[] data = data(5000);
+        InputStreamReplicator replicator = InputStreamReplicator.instance(new ByteArrayInputStream(data), -1, data.length);
+        Assert.assertEquals(data.length, replicator.length());
+        Assert.assertFalse(replicator.isSpilled());
+        Assert.assertEquals(data.length, replicator.buffer().capacity());
+        Assert.assertArrayEquals(data, read(replicator));
+        replicator.release();
+    }
+
+    @Test
+	public void spillTest() throws Exception {
+        byte[] data = data(5001);
+        InputStreamReplicator replicator = InputStreamReplicator.instance(new ByteArrayInputStream(data), 5000, 5000);
+        Assert.assertEquals(data.length, replicator.length());
+        Assert.assertTrue(replicator.isSpilled());
+        Assert.assertArrayEquals(data, read(replicator));
+        Assert.assertArrayEquals(data, read(replicator));
+        replicator.release();
+    }
+
+    @Test
+	public void wrongLengthTest() throws Exception {
+        byte[] data = data(3000);
+        InputStreamReplicator replicator = InputStreamReplicator.instance(new ByteArrayInputStream(data), 1000, 100000);
+        Assert.assertFalse(replicator.isSpilled());
+        Assert.assertArrayEquals(data, read(replicator));
+        replicator.release();
+    }
+
+}